@@ -0,0 +1,49 @@
+package graphvisualizer;
+
+import java.util.Arrays;
+
+/**
+ * Memoizes the offsets of children relative to their parent. They only depend on the amount of children and the depth of the parent,
+ * so a tree is laid out in linear time with one array lookup per node, however deep it is.
+ * Nodes are placed at the position of their parent plus their offset. The offsets are dropped when the {@link LayoutParameters} change.
+ * One offset array is kept per child amount and depth that occurred, a tree never needs more offsets than it has nodes.
+ * Not synchronized, every thread laying out trees keeps its own cache.
+ */
+class ChildOffsetCache {
+    private static final double[] NO_OFFSETS = new double[0];
+
+    private LayoutParameters parameters;
+    // offsets per depth of the parent and child amount
+    private double[][][] offsets = new double[0][][];
+
+    /**
+     * @param childAmount amount of children of the parent
+     * @param depth       of the parent in the complete tree
+     * @param parameters  the tree is drawn with. Cached offsets are dropped if they differ from the last call.
+     * @return x and y offsets of the children relative to their parent, interleaved in child order. Must not be modified.
+     */
+    double[] offsets(int childAmount, int depth, LayoutParameters parameters) {
+        if (childAmount == 0)
+            return NO_OFFSETS;
+        if (!parameters.equals(this.parameters)) {
+            this.parameters = parameters;
+            offsets = new double[0][][];
+        }
+        if (depth >= offsets.length)
+            offsets = Arrays.copyOf(offsets, Math.max(depth + 1, 2 * offsets.length));
+        double[][] atDepth = offsets[depth];
+        if (atDepth == null)
+            atDepth = offsets[depth] = new double[childAmount + 1][];
+        else if (childAmount >= atDepth.length)
+            atDepth = offsets[depth] = Arrays.copyOf(atDepth, Math.max(childAmount + 1, 2 * atDepth.length));
+        double[] layout = atDepth[childAmount];
+        if (layout == null) {
+            layout = atDepth[childAmount] = new double[2 * childAmount];
+            for (int i = 0; i < childAmount; i++) {
+                layout[2 * i] = parameters.childXOffset(i, childAmount, depth + 1);
+                layout[2 * i + 1] = parameters.childYOffset(i, depth + 1);
+            }
+        }
+        return layout;
+    }
+}
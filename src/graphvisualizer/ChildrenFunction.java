@@ -0,0 +1,19 @@
+package graphvisualizer;
+
+import java.util.function.Consumer;
+
+/**
+ * Streams the children of an existing tree node to the {@link TreeVisualizer} without wrapping the node or collecting its children in an array. <br><br>
+ *
+ * @param <T> type of the tree nodes
+ * @implSpec children have to be passed to the action in drawing order, null children are ignored.
+ * @see TreeVisualizer#draw(Object, ChildrenFunction, java.util.function.Function, java.util.function.Function)
+ */
+@FunctionalInterface
+public interface ChildrenFunction<T> {
+    /**
+     * @param node   whose children are requested
+     * @param action to be called once per child
+     */
+    void forEachChild(T node, Consumer<? super T> action);
+}
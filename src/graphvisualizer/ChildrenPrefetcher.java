@@ -0,0 +1,224 @@
+package graphvisualizer;
+
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the children of a whole tree concurrently before it is drawn.
+ * Used by the {@link TreeVisualizer} for trees whose children are slow to read (e.g. disk pages).
+ * <p>
+ * At most {@code parallelism} calls run at the same time. A call that takes longer than {@code timeoutMillis} or throws is replaced by a
+ * {@link Placeholder} child, the thread of a timed out call is abandoned so it does not reduce the parallelism.
+ * At most {@value #MAX_ABANDONED_THREADS} abandoned threads may still be running in the whole JVM, once that many are stuck
+ * no further calls are started and the nodes fetched so far are returned, the caller reads the remaining nodes itself.
+ * The drawing stays deterministic as children are stored per node in the order the node returned them.
+ */
+class ChildrenPrefetcher {
+    static final int MAX_ABANDONED_THREADS = 16;
+    private static final VisualizableNode[] NO_CHILDREN = new VisualizableNode[0];
+    // threads of timed out calls that did not return yet, shared by all prefetchers
+    private static final AtomicInteger abandonedThreads = new AtomicInteger();
+
+    private final int parallelism;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    ChildrenPrefetcher(int parallelism, long timeoutMillis) {
+        this.parallelism = parallelism;
+        this.timeoutMillis = timeoutMillis;
+        // idle threads are reused and end after a while, abandoned threads keep their slot until their call returns
+        this.executor = new ThreadPoolExecutor(0, parallelism + MAX_ABANDONED_THREADS, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "TreeVisualizer-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Lets the idle threads end, calls that are still running are not interrupted
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @param root     of the tree or subtree to fetch
+     * @param accessor used to read the children of the tree nodes
+     * @return the null filtered children of every node that was fetched. Nodes missing in the map (e.g. after an interrupt or while too many calls are stuck)
+     * have to be fetched by the caller.
+     */
+    IdentityHashMap<Object, Object[]> prefetch(Object root, TreeAccessor<?> accessor) {
+        IdentityHashMap<Object, Object[]> fetched = new IdentityHashMap<>();
+        ArrayDeque<Object> toFetch = new ArrayDeque<>();
+        toFetch.add(root);
+        prefetch(toFetch, accessor, Integer.MAX_VALUE, fetched);
+        return fetched;
+    }
+
+    /**
+     * Fetches the next nodes of a tree breadth-first, so a large tree can be fetched in bounded steps.
+     *
+     * @param toFetch  nodes whose children are fetched next. The fetched children are appended, nodes whose call was not started stay for the next step.
+     * @param accessor used to read the children of the tree nodes
+     * @param maxNodes amount of calls after which no further call is started
+     * @param fetched  the null filtered children of every fetched node are put into, see {@link #prefetch(Object, TreeAccessor)}
+     */
+    void prefetch(ArrayDeque<Object> toFetch, TreeAccessor<?> accessor, int maxNodes, IdentityHashMap<Object, Object[]> fetched) {
+        LinkedList<Fetch> running = new LinkedList<>();
+        LinkedBlockingQueue<Fetch> done = new LinkedBlockingQueue<>();
+        int started = 0;
+        // cleared once no thread is left for further calls, the running calls are still awaited
+        boolean starting = true;
+        try {
+            while ((starting && started < maxNodes && !toFetch.isEmpty()) || !running.isEmpty()) {
+                while (starting && started < maxNodes && !toFetch.isEmpty() && running.size() < parallelism) {
+                    if (abandonedThreads.get() >= MAX_ABANDONED_THREADS) {
+                        starting = false;
+                        break;
+                    }
+                    Fetch fetch = new Fetch(toFetch.peek(), accessor, done);
+                    try {
+                        executor.execute(fetch);
+                    } catch (RejectedExecutionException e) {
+                        starting = false;
+                        break;
+                    }
+                    toFetch.poll();
+                    running.add(fetch);
+                    started++;
+                }
+                if (running.isEmpty())
+                    continue;
+                Fetch fetch = done.poll(Math.max(1, running.getFirst().deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (fetch != null && running.remove(fetch)) {
+                    if (fetch.error == null) {
+                        fetched.put(fetch.node, fetch.children);
+                        toFetch.addAll(Arrays.asList(fetch.children));
+                    } else
+                        fetched.put(fetch.node, new Object[]{new Placeholder(fetch.error)});
+                }
+                // abandon calls that exceeded their timeout, running is ordered by deadline
+                long now = System.currentTimeMillis();
+                while (!running.isEmpty() && running.getFirst().deadline <= now && running.getFirst().abandon()) {
+                    Fetch timedOut = running.removeFirst();
+                    fetched.put(timedOut.node, new Object[]{new Placeholder("timeout after " + timeoutMillis + "ms")});
+                }
+            }
+        } catch (InterruptedException e) {
+            running.forEach(Fetch::abandon);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A single call reading the children of a node
+     */
+    private class Fetch implements Runnable {
+        private final Object node;
+        private final TreeAccessor<?> accessor;
+        private final LinkedBlockingQueue<Fetch> done;
+        private final long deadline;
+        // thread running the call, interrupted when the call is abandoned. Guarded by this, so a pool thread that moved on to the next call is not interrupted.
+        private Thread thread;
+        // set by the first of the fetching thread finishing the call and the prefetching thread abandoning it
+        private final AtomicBoolean settled = new AtomicBoolean();
+        // written by the fetching thread before the fetch is offered to the done queue
+        private Object[] children;
+        private String error;
+
+        Fetch(Object node, TreeAccessor<?> accessor, LinkedBlockingQueue<Fetch> done) {
+            this.node = node;
+            this.accessor = accessor;
+            this.done = done;
+            this.deadline = System.currentTimeMillis() + timeoutMillis;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (settled.get()) {
+                    // abandoned before it started
+                    abandonedThreads.decrementAndGet();
+                    return;
+                }
+                thread = Thread.currentThread();
+            }
+            try {
+                ArrayList<Object> result = new ArrayList<>();
+                accessor.forEachChild(node, result::add);
+                children = result.toArray();
+            } catch (Throwable e) {
+                // errors are shown too, the call must end settled so its thread is not counted as abandoned forever
+                error = "error: " + e.getClass().getSimpleName();
+            }
+            synchronized (this) {
+                thread = null;
+            }
+            if (settled.compareAndSet(false, true))
+                done.add(this);
+            else
+                abandonedThreads.decrementAndGet();
+        }
+
+        /**
+         * @return if the call was abandoned, false if it finished in the meantime and is about to be offered to the done queue
+         */
+        boolean abandon() {
+            if (!settled.compareAndSet(false, true))
+                return false;
+            abandonedThreads.incrementAndGet();
+            synchronized (this) {
+                // null before the call started and after it returned
+                if (thread != null)
+                    thread.interrupt();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drawn in place of the children of a node whose children could not be fetched
+     */
+    static final class Placeholder implements VisualizableNode {
+        private static final Color COLOR = new Color(255, 160, 160);
+        private final String message;
+
+        Placeholder(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public Object[] getKeys() {
+            return new Object[]{message};
+        }
+
+        @Override
+        public VisualizableNode[] getChildren() {
+            return NO_CHILDREN;
+        }
+
+        @Override
+        public Color getColor() {
+            return COLOR;
+        }
+    }
+}
@@ -64,7 +64,14 @@ public class CssGenerator {
      * @return css compliant String
      */
     public String toString() {
-        return CssGenerator.build(element + selector + " " + id, keyValues.entrySet().stream().reduce("", (str, b) -> str + b.getKey() + ": " + b.getValue() + ";", (a, b) -> a + b));
+        return CssGenerator.build(element + selector + " " + id, getDeclarations());
+    }
+
+    /**
+     * @return the css declarations without the selector, e.g. for the "ui.style" attribute of a single element
+     */
+    public String getDeclarations() {
+        return keyValues.entrySet().stream().reduce("", (str, b) -> str + b.getKey() + ": " + b.getValue() + ";", (a, b) -> a + b);
     }
 
     private static String build(String cssElement, String... keyValuePair) {
@@ -0,0 +1,75 @@
+package graphvisualizer;
+
+import java.util.Objects;
+
+/**
+ * Everything the position of a child relative to its parent depends on when a tree is drawn with a {@link TreeVisualizer.TreeLayout tree layout}.
+ * Immutable so offsets computed with it can be {@link ChildOffsetCache cached} and computed on other threads.
+ */
+final class LayoutParameters {
+    private static final double X_SCALE = 50;
+    private static final double Y = 300;
+
+    private final int k;
+    private final int maxDepth;
+    private final boolean inverted;
+    private final double yOffset;
+
+    /**
+     * @param k        max deg+ of the nodes in the tree
+     * @param maxDepth total depth the complete tree reaches
+     * @param inverted if the tree grows downwards ({@link TreeVisualizer.TreeLayout#TREE_INVERTED})
+     * @param yOffset  alternating y offset applied per child index, 0 if no {@link TreeVisualizer.YOffsetMode y offset} should be applied
+     */
+    LayoutParameters(int k, int maxDepth, boolean inverted, double yOffset) {
+        this.k = k;
+        this.maxDepth = maxDepth;
+        this.inverted = inverted;
+        this.yOffset = yOffset;
+    }
+
+    /**
+     * calculates the x position of a child at a specific index relative to its parent
+     *
+     * @param childIndex       index of the child in parents children list
+     * @param amountOfChildren total amount of children of the parent
+     * @param currentDepth     depth of the child in the complete tree
+     * @return child node x offset
+     */
+    double childXOffset(int childIndex, int amountOfChildren, int currentDepth) {
+        if (amountOfChildren == 1)
+            return 0;
+        double distanceDecay = Math.pow(k, currentDepth);
+        // calculation of "distance" was decided by trial and error in terms of how k and maxDepth affected it.
+        double distance = X_SCALE * k * k * maxDepth * maxDepth / distanceDecay;
+        double distanceBetweenChildren = distance / (amountOfChildren - 1);
+        return distanceBetweenChildren * childIndex - distance / 2;
+    }
+
+    /**
+     * calculates the y position of a child at a specific index relative to its parent
+     *
+     * @param childIndex   index of the child in parents children list
+     * @param currentDepth depth of the child in the complete tree
+     * @return child node y offset
+     */
+    double childYOffset(int childIndex, int currentDepth) {
+        double y = childIndex * yOffset * ((currentDepth % 2) * 2 + -1);
+        return inverted ? y + Y : y - Y;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof LayoutParameters))
+            return false;
+        LayoutParameters that = (LayoutParameters) o;
+        return k == that.k && maxDepth == that.maxDepth && inverted == that.inverted && Double.compare(yOffset, that.yOffset) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(k, maxDepth, inverted, yOffset);
+    }
+}
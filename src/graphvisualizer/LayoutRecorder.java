@@ -0,0 +1,119 @@
+package graphvisualizer;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.SinkAdapter;
+import org.graphstream.ui.graphicGraph.GraphicGraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records which nodes of the drawn tree graph changed, so browser viewers only get the changed nodes of a refreshed subtree as {@link LayoutSnapshot delta frame}.
+ * <p>
+ * Listens to the graph as sink. Every node keeps its index in the frames until it is removed, free indices are reused by new nodes.
+ * Clearing the graph makes the next frame a full frame. Captures have to hold the lock the graph is changed under.
+ */
+class LayoutRecorder extends SinkAdapter {
+    private final HashSet<String> changed = new HashSet<>();
+    private final HashMap<String, Integer> indices = new HashMap<>();
+    private final ArrayDeque<Integer> freeIndices = new ArrayDeque<>();
+    private int indexAmount;
+    // set until the next capture, changes are not recorded one by one then
+    private volatile boolean cleared = true;
+
+    /**
+     * @param graph       drawn tree graph this recorder listens to
+     * @param positions   graph holding the node positions, usually the tree graph itself
+     * @param classColors css fill color per style class, see {@link LayoutSnapshot#of(GraphicGraph, GraphicGraph, Map)}
+     * @param full        if a full frame is needed even if only some nodes changed
+     * @return full frame or delta frame with the nodes changed since the previous capture
+     */
+    synchronized LayoutSnapshot capture(GraphicGraph graph, GraphicGraph positions, Map<String, String> classColors, boolean full) {
+        if (full || cleared)
+            return captureAll(graph, positions, classColors);
+        List<Node> nodes = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        for (String id : changed) {
+            Node node = graph.getNode(id);
+            if (node != null)
+                nodes.add(node);
+            else if (indices.containsKey(id)) {
+                int index = indices.remove(id);
+                freeIndices.push(index);
+                removed.add(index);
+            }
+        }
+        // new nodes need their index before they can be referenced as parent
+        for (Node node : nodes)
+            if (!indices.containsKey(node.getId()))
+                indices.put(node.getId(), freeIndices.isEmpty() ? indexAmount++ : freeIndices.pop());
+        for (Node node : nodes)
+            for (Edge edge : node.getEachEdge())
+                if (edge.getTargetNode() == node && !indices.containsKey(edge.getSourceNode().getId()))
+                    // a parent that was never recorded, the viewers would miss it
+                    return captureAll(graph, positions, classColors);
+        changed.clear();
+        return LayoutSnapshot.delta(nodes, indices, positions, classColors, removed.stream().mapToInt(Integer::intValue).toArray(), indexAmount);
+    }
+
+    private LayoutSnapshot captureAll(GraphicGraph graph, GraphicGraph positions, Map<String, String> classColors) {
+        cleared = false;
+        changed.clear();
+        indices.clear();
+        freeIndices.clear();
+        // the full frame numbers the nodes in graph order
+        for (Node node : graph)
+            indices.put(node.getId(), indices.size());
+        indexAmount = indices.size();
+        return LayoutSnapshot.of(graph, positions, classColors);
+    }
+
+    private void record(String nodeId) {
+        if (!cleared)
+            synchronized (this) {
+                changed.add(nodeId);
+            }
+    }
+
+    @Override
+    public synchronized void graphCleared(String sourceId, long timeId) {
+        cleared = true;
+        changed.clear();
+    }
+
+    @Override
+    public void nodeAdded(String sourceId, long timeId, String nodeId) {
+        record(nodeId);
+    }
+
+    @Override
+    public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+        record(nodeId);
+    }
+
+    @Override
+    public void edgeAdded(String sourceId, long timeId, String edgeId, String fromNodeId, String toNodeId, boolean directed) {
+        // the parent of the target node changed
+        record(toNodeId);
+    }
+
+    @Override
+    public void nodeAttributeAdded(String sourceId, long timeId, String nodeId, String attribute, Object value) {
+        record(nodeId);
+    }
+
+    @Override
+    public void nodeAttributeChanged(String sourceId, long timeId, String nodeId, String attribute, Object oldValue, Object newValue) {
+        record(nodeId);
+    }
+
+    @Override
+    public void nodeAttributeRemoved(String sourceId, long timeId, String nodeId, String attribute) {
+        record(nodeId);
+    }
+}
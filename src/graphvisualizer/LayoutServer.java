@@ -0,0 +1,267 @@
+package graphvisualizer;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Local HTTP server streaming the drawn tree to browser viewers, so several viewers can follow the same tree and render it outside the JVM.
+ * <p>
+ * {@code /} serves a canvas viewer, {@code /layout} streams {@link LayoutSnapshot frames} each prefixed by their int byte length.
+ * A new frame is sent at most once per frame interval after the tree {@link #changed() changed}, as delta frame if only some nodes changed.
+ * New viewers get the latest full frame and the delta frames since. Viewers falling more than {@value #MAX_QUEUED_FRAMES} frames behind start over the same way.
+ * <p>
+ * Requests naming another host than the loopback address are rejected, so web pages can not read the tree by rebinding their domain to the loopback address.
+ */
+class LayoutServer {
+    private static final String VIEWER_RESOURCE = "viewer.html";
+    static final int MAX_QUEUED_FRAMES = 64;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService publisher;
+    private final Snapshots snapshots;
+    private final long frameInterval;
+    private final byte[] viewerPage;
+    private final Set<String> hosts;
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private long lastFrame;
+    private int sequence;
+    // guarded by this, the latest full frame and the delta frames since
+    private final Set<LinkedBlockingQueue<byte[]>> clients = new HashSet<>();
+    private final List<byte[]> deltaFrames = new ArrayList<>();
+    private byte[] fullFrame;
+    private long deltaBytes;
+    private boolean fullFrameNeeded = true;
+
+    /**
+     * Captures the drawn tree
+     */
+    interface Snapshots {
+        /**
+         * @param full if all nodes are needed, otherwise the nodes changed since the previous capture are enough
+         * @return full frame or delta frame relative to the previous capture
+         */
+        LayoutSnapshot capture(boolean full);
+    }
+
+    /**
+     * Starts the server on the loopback address
+     *
+     * @param port          to listen on, 0 picks a free port
+     * @param snapshots     captures the current state of the drawn tree
+     * @param frameInterval minimum time in milliseconds between two frames
+     * @throws IOException if the port can not be bound or the viewer page is missing
+     */
+    LayoutServer(int port, Snapshots snapshots, long frameInterval) throws IOException {
+        this.snapshots = snapshots;
+        this.frameInterval = frameInterval;
+        this.viewerPage = readViewerPage();
+        handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "TreeVisualizer-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TreeVisualizer-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        int boundPort = server.getAddress().getPort();
+        hosts = new HashSet<>();
+        for (String host : Arrays.asList("127.0.0.1", "localhost", "[::1]")) {
+            hosts.add(host + ":" + boundPort);
+            // browsers leave out the default port
+            if (boundPort == 80)
+                hosts.add(host);
+        }
+        Filter hostFilter = new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                String host = exchange.getRequestHeaders().getFirst("Host");
+                if (host == null || !hosts.contains(host.toLowerCase(Locale.ROOT))) {
+                    exchange.sendResponseHeaders(403, -1);
+                    exchange.close();
+                    return;
+                }
+                chain.doFilter(exchange);
+            }
+
+            @Override
+            public String description() {
+                return "rejects requests for other hosts than the loopback address";
+            }
+        };
+        server.setExecutor(handlers);
+        server.createContext("/", this::serveViewer).getFilters().add(hostFilter);
+        server.createContext("/layout", this::streamLayout).getFilters().add(hostFilter);
+        server.start();
+    }
+
+    URI getUri() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/");
+    }
+
+    /**
+     * Schedules a frame with the current state of the tree. Cheap to call after every change.
+     */
+    void changed() {
+        if (frameScheduled.compareAndSet(false, true)) {
+            long delay = Math.max(0, lastFrame + frameInterval - System.currentTimeMillis());
+            publisher.schedule(this::publish, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void stop() {
+        server.stop(0);
+        publisher.shutdownNow();
+        // interrupts the streams waiting for their next frame
+        handlers.shutdownNow();
+    }
+
+    private void publish() {
+        // reset the flag first so changes made while encoding schedule another frame
+        frameScheduled.set(false);
+        lastFrame = System.currentTimeMillis();
+        boolean full;
+        synchronized (this) {
+            full = fullFrameNeeded;
+            fullFrameNeeded = false;
+        }
+        // only the capture holds the lock of the tree, the frame is encoded afterwards
+        LayoutSnapshot snapshot;
+        try {
+            snapshot = snapshots.capture(full);
+        } catch (RuntimeException e) {
+            // the recorded changes may be half consumed, the next frame starts over and the viewers do not freeze on the last frame
+            synchronized (this) {
+                fullFrameNeeded = true;
+            }
+            changed();
+            // the executor would swallow the failure
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            snapshot.write(new DataOutputStream(bytes), ++sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] frame = bytes.toByteArray();
+        synchronized (this) {
+            if (snapshot.isDelta()) {
+                deltaFrames.add(frame);
+                deltaBytes += frame.length;
+                // new viewers would read more than a full frame
+                if (deltaBytes > fullFrame.length || deltaFrames.size() >= MAX_QUEUED_FRAMES) {
+                    fullFrameNeeded = true;
+                    changed();
+                }
+            } else {
+                fullFrame = frame;
+                deltaFrames.clear();
+                deltaBytes = 0;
+            }
+            for (LinkedBlockingQueue<byte[]> client : clients)
+                if (!snapshot.isDelta()) {
+                    // a full frame replaces the frames the client did not pick up yet
+                    client.clear();
+                    client.add(frame);
+                } else if (client.size() >= MAX_QUEUED_FRAMES) {
+                    client.clear();
+                    catchUp(client);
+                } else
+                    client.add(frame);
+        }
+    }
+
+    /**
+     * Queues the latest full frame and the delta frames since for a client, the latest delta frame included
+     */
+    private synchronized void catchUp(LinkedBlockingQueue<byte[]> client) {
+        if (fullFrame == null)
+            return;
+        client.add(fullFrame);
+        client.addAll(deltaFrames);
+    }
+
+    private void serveViewer(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, viewerPage.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(viewerPage);
+        }
+    }
+
+    private void streamLayout(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        // length 0 streams the response in chunks until it is closed
+        exchange.sendResponseHeaders(200, 0);
+        LinkedBlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+        synchronized (this) {
+            catchUp(frames);
+            clients.add(frames);
+        }
+        try (DataOutputStream out = new DataOutputStream(exchange.getResponseBody())) {
+            while (true) {
+                byte[] frame = frames.take();
+                out.writeInt(frame.length);
+                out.write(frame);
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the viewer disconnected
+        } finally {
+            synchronized (this) {
+                clients.remove(frames);
+            }
+            exchange.close();
+        }
+    }
+
+    private static byte[] readViewerPage() throws IOException {
+        try (InputStream in = LayoutServer.class.getResourceAsStream(VIEWER_RESOURCE)) {
+            if (in == null)
+                throw new IOException("missing resource " + VIEWER_RESOURCE);
+            ByteArrayOutputStream page = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+                page.write(buffer, 0, read);
+            return page.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package graphvisualizer;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Node;
+import org.graphstream.ui.graphicGraph.GraphicGraph;
+import org.graphstream.ui.graphicGraph.GraphicNode;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Positions, labels and styles of a drawn tree, written in a compact binary layout format that viewers outside the JVM can read.
+ * <p>
+ * A frame is written big-endian as:
+ * <pre>
+ * int     magic {@value #MAGIC} ("TVL1")
+ * int     sequence number of the frame
+ * int     amount of nodes n
+ * short   amount of style classes c, followed by c times: string class name, string css fill color
+ * float[n] x positions, y axis pointing up
+ * float[n] y positions
+ * int[n]  parent indices, -1 for the root
+ * int[n]  own fill colors as 0xRRGGBB, -1 for the fill color of the class
+ * byte[n] style class indices
+ * n times string label
+ * </pre>
+ * A delta frame only carries the nodes that changed since the previous frame and is written as:
+ * <pre>
+ * int     magic {@value #DELTA_MAGIC} ("TVD1")
+ * int     sequence number of the frame
+ * int     amount of node indices n, indices beyond the previous frame are new
+ * short   amount of style classes c, followed by c times: string class name, string css fill color
+ * int     amount of removed nodes r, followed by r times their int index
+ * int     amount of changed nodes m
+ * int[m]  indices of the changed nodes
+ * float[m] x positions, float[m] y positions, int[m] parent indices, int[m] own fill colors, byte[m] style class indices
+ * m times string label
+ * </pre>
+ * Removed indices are applied before the changed nodes and may be reused by them. Indices refer to the nodes of the previous frames.
+ * Strings are written as an unsigned short byte length followed by the UTF-8 bytes.
+ */
+final class LayoutSnapshot {
+    static final int MAGIC = 0x54564C31;
+    static final int DELTA_MAGIC = 0x54564431;
+    /**
+     * node attribute holding the own fill color of a node as 0xRRGGBB, the color itself only ends up in the node css
+     */
+    static final String COLOR_ATTRIBUTE = "ui.tv.color";
+
+    private final String[] classNames;
+    private final String[] classColors;
+    private final float[] x;
+    private final float[] y;
+    private final int[] parents;
+    private final int[] colors;
+    private final byte[] classes;
+    private final String[] labels;
+    // delta frames only
+    private final int indexAmount;
+    private final int[] indices;
+    private final int[] removed;
+
+    /**
+     * @param classNames  names of the style classes, the first one is used for nodes without known class
+     * @param classColors css fill colors of the style classes
+     * @param x           x positions of the nodes
+     * @param y           y positions of the nodes
+     * @param parents     parent index per node, -1 for the root
+     * @param colors      own fill color per node as 0xRRGGBB or -1
+     * @param classes     style class index per node
+     * @param labels      label per node
+     */
+    LayoutSnapshot(String[] classNames, String[] classColors, float[] x, float[] y, int[] parents, int[] colors, byte[] classes, String[] labels) {
+        this(classNames, classColors, x, y, parents, colors, classes, labels, x.length, null, null);
+    }
+
+    /**
+     * @param indexAmount amount of node indices after the delta
+     * @param indices     index per changed node, null for a full frame
+     * @param removed     indices of the removed nodes, null for a full frame
+     */
+    private LayoutSnapshot(String[] classNames, String[] classColors, float[] x, float[] y, int[] parents, int[] colors, byte[] classes, String[] labels,
+                           int indexAmount, int[] indices, int[] removed) {
+        this.indexAmount = indexAmount;
+        this.indices = indices;
+        this.removed = removed;
+        this.classNames = classNames;
+        this.classColors = classColors;
+        this.x = x;
+        this.y = y;
+        this.parents = parents;
+        this.colors = colors;
+        this.classes = classes;
+        this.labels = labels;
+    }
+
+    /**
+     * @param graph        drawn tree graph, edges point from parent to child
+     * @param positions    graph holding the node positions, usually the tree graph itself
+     * @param classColors  css fill color per style class ({@code ui.class} attribute), the first class is used for nodes without known class
+     * @return snapshot of the current state of the graph
+     */
+    static LayoutSnapshot of(GraphicGraph graph, GraphicGraph positions, Map<String, String> classColors) {
+        HashMap<String, Integer> indices = new HashMap<>(2 * graph.getNodeCount());
+        for (Node node : graph)
+            indices.put(node.getId(), indices.size());
+        return of(graph.getNodeSet(), indices, positions, classColors, null, 0, null);
+    }
+
+    /**
+     * @param nodes        changed nodes of the drawn tree graph
+     * @param indices      index per node id, contains the changed nodes and their parents
+     * @param positions    graph holding the node positions, usually the tree graph itself
+     * @param classColors  css fill color per style class, see {@link #of(GraphicGraph, GraphicGraph, Map)}
+     * @param removed      indices of the nodes removed since the previous frame
+     * @param indexAmount  amount of node indices after the delta
+     * @return delta frame with the current state of the changed nodes
+     */
+    static LayoutSnapshot delta(Collection<? extends Node> nodes, Map<String, Integer> indices, GraphicGraph positions, Map<String, String> classColors,
+                                int[] removed, int indexAmount) {
+        int[] changed = new int[nodes.size()];
+        int i = 0;
+        for (Node node : nodes)
+            changed[i++] = indices.get(node.getId());
+        return of(nodes, indices, positions, classColors, changed, indexAmount, removed);
+    }
+
+    private static LayoutSnapshot of(Collection<? extends Node> nodes, Map<String, Integer> indices, GraphicGraph positions, Map<String, String> classColors,
+                                     int[] changed, int indexAmount, int[] removed) {
+        int n = nodes.size();
+        String[] classNames = classColors.keySet().toArray(new String[0]);
+        HashMap<String, Byte> classIndices = new HashMap<>();
+        for (byte i = 0; i < classNames.length; i++)
+            classIndices.put(classNames[i], i);
+        float[] x = new float[n];
+        float[] y = new float[n];
+        int[] parents = new int[n];
+        int[] colors = new int[n];
+        byte[] classes = new byte[n];
+        String[] labels = new String[n];
+        int i = 0;
+        for (Node node : nodes) {
+            GraphicNode positioned = positions.getNode(node.getId());
+            if (positioned == null)
+                positioned = (GraphicNode) node;
+            x[i] = (float) positioned.getX();
+            y[i] = (float) positioned.getY();
+            parents[i] = -1;
+            for (Edge edge : node.getEachEdge())
+                if (edge.getTargetNode() == node)
+                    parents[i] = indices.get(edge.getSourceNode().getId());
+            Object color = node.getAttribute(COLOR_ATTRIBUTE);
+            colors[i] = color instanceof Integer ? (Integer) color : -1;
+            classes[i] = classIndices.getOrDefault(String.valueOf(node.<Object>getAttribute("ui.class")), (byte) 0);
+            Object label = node.getAttribute("ui.label");
+            labels[i] = label == null ? "" : label.toString();
+            i++;
+        }
+        return new LayoutSnapshot(classNames, classColors.values().toArray(new String[0]), x, y, parents, colors, classes, labels,
+                changed == null ? n : indexAmount, changed, removed);
+    }
+
+    /**
+     * @return if the snapshot only holds the nodes changed since the previous frame
+     */
+    boolean isDelta() {
+        return indices != null;
+    }
+
+    int getNodeAmount() {
+        return x.length;
+    }
+
+    /**
+     * Writes the snapshot as one full or delta frame of the binary layout format
+     *
+     * @param out      to write to
+     * @param sequence number of the frame
+     * @throws IOException if writing fails
+     */
+    void write(DataOutput out, int sequence) throws IOException {
+        out.writeInt(isDelta() ? DELTA_MAGIC : MAGIC);
+        out.writeInt(sequence);
+        out.writeInt(indexAmount);
+        out.writeShort(classNames.length);
+        for (int i = 0; i < classNames.length; i++) {
+            writeString(out, classNames[i]);
+            writeString(out, classColors[i]);
+        }
+        if (isDelta()) {
+            out.writeInt(removed.length);
+            for (int index : removed)
+                out.writeInt(index);
+            out.writeInt(indices.length);
+            for (int index : indices)
+                out.writeInt(index);
+        }
+        for (float value : x)
+            out.writeFloat(value);
+        for (float value : y)
+            out.writeFloat(value);
+        for (int parent : parents)
+            out.writeInt(parent);
+        for (int color : colors)
+            out.writeInt(color);
+        out.write(classes);
+        for (String label : labels)
+            writeString(out, label);
+    }
+
+    private static void writeString(DataOutput out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        out.writeShort(length);
+        out.write(bytes, 0, length);
+    }
+}
@@ -0,0 +1,41 @@
+package graphvisualizer;
+
+import java.util.function.Supplier;
+
+/**
+ * Optional extension of the {@link VisualizableNode} interface for trees that report their own mutations. <br><br>
+ * If the root passed to {@link TreeVisualizer#draw(VisualizableNode)} implements this interface the {@link TreeVisualizer} registers a
+ * {@link SubtreeChangeListener} on it and redraws the reported subtrees at a capped rate without further draw calls.
+ *
+ * The reported subtrees are read on a background thread while the application may keep changing the tree, see {@link #readLocked(Supplier)}.
+ *
+ * @implSpec only the root of a drawn tree is asked to register listeners. The tree itself decides how mutations of inner nodes are reported to them.
+ * @see TreeVisualizer#setMaxRefreshRate(int)
+ */
+public interface ObservableVisualizableNode extends VisualizableNode {
+
+    /**
+     * @param listener to be notified about every changed subtree of this tree
+     */
+    void addSubtreeChangeListener(SubtreeChangeListener listener);
+
+    /**
+     * @param listener that should no longer be notified
+     */
+    void removeSubtreeChangeListener(SubtreeChangeListener listener);
+
+    /**
+     * Runs a read of the tree by the {@link TreeVisualizer}. Every read done on a background thread, the refreshes and progressive draws,
+     * goes through this method, so a tree changed by other threads can exclude its mutations while it is read,
+     * e.g. by holding the read lock of a {@link java.util.concurrent.locks.ReadWriteLock} its mutations take the write lock of.
+     * The visualizer takes its own lock within the read, so mutations holding the lock of the tree may call draw methods.
+     *
+     * @param read reads the tree
+     * @param <R>  type of the read result
+     * @return result of the read
+     * @implSpec the default implementation runs the read without synchronization, which is only safe if the tree is not changed concurrently.
+     */
+    default <R> R readLocked(Supplier<R> read) {
+        return read.get();
+    }
+}
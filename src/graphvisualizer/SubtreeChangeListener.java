@@ -0,0 +1,17 @@
+package graphvisualizer;
+
+/**
+ * Receives change notifications of an {@link ObservableVisualizableNode observable tree}. <br><br>
+ *
+ * @implNote The {@link TreeVisualizer} implementation only marks the subtree dirty and returns immediately, so it is safe to call from hot loops.
+ * @see ObservableVisualizableNode
+ */
+@FunctionalInterface
+public interface SubtreeChangeListener {
+    /**
+     * Called by the observed tree after a mutation.
+     *
+     * @param subtreeRoot root of the smallest subtree containing all changes (keys, color or children). Report the tree root if unsure.
+     */
+    void subtreeChanged(VisualizableNode subtreeRoot);
+}
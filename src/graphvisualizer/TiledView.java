@@ -0,0 +1,480 @@
+package graphvisualizer;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Node;
+import org.graphstream.ui.geom.Point3;
+import org.graphstream.ui.graphicGraph.GraphicElement;
+import org.graphstream.ui.graphicGraph.GraphicGraph;
+import org.graphstream.ui.graphicGraph.GraphicNode;
+import org.graphstream.ui.graphicGraph.stylesheet.StyleConstants;
+import org.graphstream.ui.graphicGraph.stylesheet.Values;
+import org.graphstream.ui.swingViewer.DefaultView;
+import org.graphstream.ui.swingViewer.GraphRenderer;
+import org.graphstream.ui.swingViewer.util.GraphMetrics;
+import org.graphstream.ui.view.Camera;
+import org.graphstream.ui.view.Viewer;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * View that keeps rendered parts of a static tree as offscreen tiles, so panning only copies images instead of rendering every node again.
+ * <p>
+ * The tree is cut into tiles of {@value #TILE_SIZE} pixels per zoom level. A tile is rendered once when it first becomes visible and
+ * kept until the tree is redrawn, its nodes are marked or the cache exceeds its memory limit, evicting the least recently shown tiles first.
+ * Only the tiles of the last few shown zoom levels are kept. The missing tiles of a frame are rendered together in one pass with the scale of their zoom level.
+ * With a memory limit below the size of the visible tiles or with a rotated camera the view renders like the default view.
+ * The limit has to be 0 while nodes are moved by a layout algorithm.
+ */
+class TiledView extends DefaultView {
+    private static final long serialVersionUID = 1L;
+    static final int TILE_SIZE = 256;
+    /**
+     * graph attribute changed whenever the drawn tree changes, invalidating all tiles
+     */
+    static final String VERSION_ATTRIBUTE = "ui.tv.version";
+
+    private static final long TILE_BYTES = 4L * TILE_SIZE * TILE_SIZE;
+    // pixels around a marked node and its neighbours whose tiles are rendered again, and around a rendered tile block. Covers node sizes and labels,
+    // edges reaching further are handled by renderTiles
+    private static final int INVALIDATION_MARGIN = TILE_SIZE / 2;
+    // zoom levels whose tiles are kept, each zoom step of the mouse wheel starts a new level
+    private static final int MAX_ZOOM_LEVELS = 4;
+
+    private volatile long memoryLimit;
+    private final LinkedHashMap<TileKey, BufferedImage> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<ZoomLevel> zoomLevels = new ArrayList<>();
+    private final List<String> invalidatedNodes = new ArrayList<>();
+    // pixels per graph unit at zoom 1 per viewport size of rendered tile blocks, depends on the bounds of the graph
+    private final HashMap<Long, Double> viewportScales = new HashMap<>();
+    private Object version;
+    // the camera keeps the transform of the last rendered tile block until the view is rendered completely again
+    private boolean cameraStale;
+    // transform of the shown tiles, used for pixel positions while the camera is stale: pixels per graph unit and screen position of the world pixel origin
+    private double shownRatio;
+    private long shownOffsetX;
+    private long shownOffsetY;
+
+    TiledView(Viewer viewer, String identifier, GraphRenderer renderer) {
+        super(viewer, identifier, renderer);
+    }
+
+    long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * @param memoryLimit maximum amount of bytes used by cached tiles. 0 turns the cache off.
+     */
+    void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        repaint();
+    }
+
+    /**
+     * Renders the tiles around the provided nodes again the next time they are shown.
+     * Has to be called on the Swing thread after the nodes changed their style, e.g. when they are marked.
+     *
+     * @param nodeIds ids of the changed nodes
+     */
+    void invalidateNodes(Collection<String> nodeIds) {
+        invalidatedNodes.addAll(nodeIds);
+        repaint();
+    }
+
+    /**
+     * Drops all tiles, e.g. while a node is dragged. Has to be called on the Swing thread.
+     */
+    void invalidateAll() {
+        tiles.clear();
+        zoomLevels.clear();
+        viewportScales.clear();
+        invalidatedNodes.clear();
+        repaint();
+    }
+
+    /**
+     * Looks up the node at the pixel position with the transform of the shown tiles, like the camera does, while the camera is stale
+     */
+    @Override
+    public GraphicElement findNodeOrSpriteAt(double x, double y) {
+        if (!cameraStale)
+            return super.findNodeOrSpriteAt(x, y);
+        // the camera returns the last matching node, which is drawn on top
+        GraphicElement found = null;
+        for (Node node : graph)
+            if (isNodeIn((GraphicNode) node, x, y, x, y))
+                found = (GraphicNode) node;
+        return found;
+    }
+
+    @Override
+    public Collection<GraphicElement> allNodesOrSpritesIn(double x1, double y1, double x2, double y2) {
+        if (!cameraStale)
+            return super.allNodesOrSpritesIn(x1, y1, x2, y2);
+        List<GraphicElement> elements = new ArrayList<>();
+        for (Node node : graph)
+            if (isNodeIn((GraphicNode) node, x1, y1, x2, y2))
+                elements.add((GraphicNode) node);
+        return elements;
+    }
+
+    @Override
+    public void moveElementAtPx(GraphicElement element, double x, double y) {
+        if (!cameraStale) {
+            super.moveElementAtPx(element, x, y);
+            return;
+        }
+        element.move((x - shownOffsetX) / shownRatio, -(y - shownOffsetY) / shownRatio, element.getZ());
+    }
+
+    /**
+     * Moves the camera center by the provided amount of screen pixels
+     */
+    void moveViewCenter(double deltaX, double deltaY) {
+        Camera camera = getCamera();
+        Point3 center = camera.getViewCenter();
+        if (!cameraStale) {
+            Point3 pixels = camera.transformGuToPx(center.x, center.y, 0);
+            Point3 moved = camera.transformPxToGu(pixels.x + deltaX, pixels.y + deltaY);
+            camera.setViewCenter(moved.x, moved.y, 0);
+        } else
+            camera.setViewCenter(center.x + deltaX / shownRatio, center.y - deltaY / shownRatio, 0);
+    }
+
+    /**
+     * @return if the box of the node overlaps the provided screen area, node sizes are taken from the style like the camera does
+     */
+    private boolean isNodeIn(GraphicNode node, double x1, double y1, double x2, double y2) {
+        Values size = node.getStyle().getSize();
+        double halfWidth = lengthToPx(size, 0) / 2;
+        double halfHeight = size.size() > 1 ? lengthToPx(size, 1) / 2 : halfWidth;
+        double x = node.getX() * shownRatio + shownOffsetX;
+        double y = -node.getY() * shownRatio + shownOffsetY;
+        return x + halfWidth >= x1 && y + halfHeight >= y1 && x - halfWidth <= x2 && y - halfHeight <= y2;
+    }
+
+    @Override
+    public void display(GraphicGraph graph, boolean graphChanged) {
+        // called on the Swing thread after the viewer graph was updated
+        Object currentVersion = graph.getAttribute(VERSION_ATTRIBUTE);
+        if (!Objects.equals(version, currentVersion)) {
+            version = currentVersion;
+            invalidateAll();
+        } else if (!invalidatedNodes.isEmpty()) {
+            invalidatedNodes.forEach(this::invalidateNode);
+            invalidatedNodes.clear();
+        }
+        super.display(graph, graphChanged);
+    }
+
+    /**
+     * @return the length in pixels of the shown tiles
+     */
+    private double lengthToPx(Values values, int index) {
+        if (values.units == StyleConstants.Units.GU)
+            return values.get(index) * shownRatio;
+        GraphMetrics metrics = getCamera().getMetrics();
+        return metrics.lengthToPx(values, index);
+    }
+
+    @Override
+    public void render(Graphics2D g) {
+        Camera camera = getCamera();
+        int width = getWidth();
+        int height = getHeight();
+        // at most that many tiles overlap the view, drawn tiles would be evicted again right away with a smaller limit
+        long visibleTiles = (long) (width / TILE_SIZE + 2) * (height / TILE_SIZE + 2);
+        if (memoryLimit < visibleTiles * TILE_BYTES || camera.getViewRotation() != 0) {
+            if (!tiles.isEmpty())
+                invalidateAll();
+            super.render(g);
+            cameraStale = false;
+            return;
+        }
+        double percent = camera.getViewPercent();
+        ZoomLevel level = null;
+        for (Iterator<ZoomLevel> iterator = zoomLevels.iterator(); iterator.hasNext() && level == null; ) {
+            ZoomLevel zoomLevel = iterator.next();
+            if (zoomLevel.matches(percent, width, height)) {
+                // most recently shown levels come last
+                iterator.remove();
+                level = zoomLevel;
+            }
+        }
+        if (level == null) {
+            // the first frame of a zoom level is rendered completely to learn its scale
+            super.render(g);
+            cameraStale = false;
+            addZoomLevel(new ZoomLevel(percent, width, height, camera.getMetrics().ratioPx2Gu));
+            return;
+        }
+        zoomLevels.add(level);
+        // the camera returns its own center point, which is moved while tiles are rendered
+        Point3 center = camera.getViewCenter();
+        double centerX = center.x;
+        double centerY = center.y;
+        double centerZ = center.z;
+        // screen position of the world pixel origin, world pixels have the y axis pointing down like the screen
+        double offsetX = width / 2.0 - centerX * level.ratio;
+        double offsetY = height / 2.0 + centerY * level.ratio;
+        int firstColumn = (int) Math.floor(-offsetX / TILE_SIZE);
+        int lastColumn = (int) Math.floor((width - offsetX) / TILE_SIZE);
+        int firstRow = (int) Math.floor(-offsetY / TILE_SIZE);
+        int lastRow = (int) Math.floor((height - offsetY) / TILE_SIZE);
+        // bounds of the missing tiles, rendered together in one pass
+        int[] missing = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for (int row = firstRow; row <= lastRow; row++)
+            for (int column = firstColumn; column <= lastColumn; column++)
+                if (!tiles.containsKey(new TileKey(level, column, row))) {
+                    missing[0] = Math.min(missing[0], column);
+                    missing[1] = Math.min(missing[1], row);
+                    missing[2] = Math.max(missing[2], column);
+                    missing[3] = Math.max(missing[3], row);
+                }
+        if (missing[0] != Integer.MAX_VALUE) {
+            renderTiles(level, missing[0], missing[1], missing[2], missing[3]);
+            camera.setViewPercent(level.percent);
+            camera.setViewCenter(centerX, centerY, centerZ);
+        }
+        long roundedX = Math.round(offsetX);
+        long roundedY = Math.round(offsetY);
+        for (int row = firstRow; row <= lastRow; row++)
+            for (int column = firstColumn; column <= lastColumn; column++)
+                g.drawImage(tiles.get(new TileKey(level, column, row)), (int) (column * TILE_SIZE + roundedX), (int) (row * TILE_SIZE + roundedY), null);
+        cameraStale = true;
+        shownRatio = level.ratio;
+        shownOffsetX = roundedX;
+        shownOffsetY = roundedY;
+        // the shown tiles are the most recently used ones and fit into the limit
+        evict();
+    }
+
+    /**
+     * Renders the missing tiles of the provided block of tiles in one pass. The viewport covers the block and a margin around it,
+     * so node shapes and labels reaching into the block are drawn. The camera culls edges whose nodes are both outside the viewport,
+     * so the viewport is widened to the nodes of the edges crossing the block.
+     */
+    private void renderTiles(ZoomLevel level, int firstColumn, int firstRow, int lastColumn, int lastRow) {
+        int blockX = firstColumn * TILE_SIZE;
+        int blockY = firstRow * TILE_SIZE;
+        int blockWidth = (lastColumn - firstColumn + 1) * TILE_SIZE;
+        int blockHeight = (lastRow - firstRow + 1) * TILE_SIZE;
+        // min x, min y, max x, max y of the viewport in world pixels
+        double[] viewport = {blockX - INVALIDATION_MARGIN, blockY - INVALIDATION_MARGIN, blockX + blockWidth + INVALIDATION_MARGIN, blockY + blockHeight + INVALIDATION_MARGIN};
+        Rectangle2D.Double blockBounds = new Rectangle2D.Double(blockX, blockY, blockWidth, blockHeight);
+        for (Edge edge : graph.getEachEdge()) {
+            GraphicNode source = edge.getSourceNode();
+            GraphicNode target = edge.getTargetNode();
+            double x1 = source.getX() * level.ratio;
+            double y1 = -source.getY() * level.ratio;
+            double x2 = target.getX() * level.ratio;
+            double y2 = -target.getY() * level.ratio;
+            if (!contains(viewport, x1, y1) && !contains(viewport, x2, y2) && blockBounds.intersectsLine(x1, y1, x2, y2)) {
+                include(viewport, x1, y1);
+                include(viewport, x2, y2);
+            }
+        }
+        // whole tiles around the margin, so only a few viewport sizes occur and their scales are reused
+        int left = INVALIDATION_MARGIN + roundUpToTiles(blockX - INVALIDATION_MARGIN - viewport[0]);
+        int top = INVALIDATION_MARGIN + roundUpToTiles(blockY - INVALIDATION_MARGIN - viewport[1]);
+        int viewportWidth = left + blockWidth + INVALIDATION_MARGIN + roundUpToTiles(viewport[2] - blockX - blockWidth - INVALIDATION_MARGIN);
+        int viewportHeight = top + blockHeight + INVALIDATION_MARGIN + roundUpToTiles(viewport[3] - blockY - blockHeight - INVALIDATION_MARGIN);
+        Camera camera = getCamera();
+        camera.setViewCenter((blockX - left + viewportWidth / 2.0) / level.ratio, -(blockY - top + viewportHeight / 2.0) / level.ratio, 0);
+        BufferedImage block = new BufferedImage(blockWidth, blockHeight, BufferedImage.TYPE_INT_ARGB);
+        // the scale of a viewport is inversely proportional to the zoom, it is estimated and then learned once per viewport size
+        Long viewportKey = (long) viewportWidth << 32 | viewportHeight;
+        Double scale = viewportScales.get(viewportKey);
+        boolean rendered = false;
+        if (scale == null) {
+            double percent = estimateScale(viewportWidth, viewportHeight) / level.ratio;
+            camera.setViewPercent(percent > 0 && !Double.isInfinite(percent) ? percent : level.percent);
+            renderBlock(block, left, top, viewportWidth, viewportHeight);
+            scale = camera.getMetrics().ratioPx2Gu * camera.getViewPercent();
+            viewportScales.put(viewportKey, scale);
+            rendered = camera.getMetrics().ratioPx2Gu == level.ratio;
+        }
+        if (!rendered) {
+            camera.setViewPercent(scale / level.ratio);
+            renderBlock(block, left, top, viewportWidth, viewportHeight);
+        }
+        for (int row = firstRow; row <= lastRow; row++)
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                TileKey key = new TileKey(level, column, row);
+                if (tiles.containsKey(key))
+                    continue;
+                BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = tile.createGraphics();
+                g.drawImage(block, -(column - firstColumn) * TILE_SIZE, -(row - firstRow) * TILE_SIZE, null);
+                g.dispose();
+                tiles.put(key, tile);
+            }
+    }
+
+    /**
+     * @return pixels per graph unit at zoom 1 for a viewport of the provided size, computed from the graph bounds and padding like the camera does.
+     * NaN or infinite for a graph without extent.
+     */
+    private double estimateScale(int viewportWidth, int viewportHeight) {
+        Values padding = graph.getStyle().getPadding();
+        boolean pixels = padding.units == StyleConstants.Units.PX;
+        boolean graphUnits = padding.units == StyleConstants.Units.GU;
+        double paddingX = padding.size() > 0 ? 2 * padding.get(0) : 0;
+        double paddingY = padding.size() > 1 ? 2 * padding.get(1) : paddingX;
+        double paddingXPx = pixels ? paddingX : 0;
+        double paddingYPx = pixels ? paddingY : 0;
+        // the camera shrinks pixel paddings larger than the viewport
+        if (paddingXPx > viewportWidth)
+            paddingXPx = viewportWidth / 10.0;
+        if (paddingYPx > viewportHeight)
+            paddingYPx = viewportHeight / 10.0;
+        double graphWidth = graph.getMaxPos().x - graph.getMinPos().x + (graphUnits ? paddingX : 0);
+        double graphHeight = graph.getMaxPos().y - graph.getMinPos().y + (graphUnits ? paddingY : 0);
+        return Math.min((viewportWidth - paddingXPx) / graphWidth, (viewportHeight - paddingYPx) / graphHeight);
+    }
+
+    /**
+     * Renders the viewport into the block image, which starts left and top pixels into the viewport
+     */
+    private void renderBlock(BufferedImage block, int left, int top, int viewportWidth, int viewportHeight) {
+        Graphics2D g = block.createGraphics();
+        g.translate(-left, -top);
+        // the viewport origin moves the area the camera culls against along with the translated graphics
+        renderer.render(g, -left, -top, viewportWidth, viewportHeight);
+        g.dispose();
+    }
+
+    /**
+     * @return the provided amount of pixels rounded up to whole tiles, 0 for negative amounts
+     */
+    private static int roundUpToTiles(double pixels) {
+        return pixels <= 0 ? 0 : (int) Math.ceil(pixels / TILE_SIZE) * TILE_SIZE;
+    }
+
+    /**
+     * @param bounds min x, min y, max x, max y
+     */
+    private static boolean contains(double[] bounds, double x, double y) {
+        return x >= bounds[0] && y >= bounds[1] && x <= bounds[2] && y <= bounds[3];
+    }
+
+    /**
+     * Adds a zoom level, dropping the least recently shown level and its tiles if there are too many
+     */
+    private void addZoomLevel(ZoomLevel level) {
+        zoomLevels.add(level);
+        if (zoomLevels.size() > MAX_ZOOM_LEVELS) {
+            ZoomLevel dropped = zoomLevels.remove(0);
+            tiles.keySet().removeIf(key -> key.level == dropped);
+        }
+    }
+
+    private void evict() {
+        // least recently shown tiles come first
+        Iterator<TileKey> iterator = tiles.keySet().iterator();
+        long bytes = tiles.size() * TILE_BYTES;
+        while (bytes > memoryLimit && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            bytes -= TILE_BYTES;
+        }
+    }
+
+    /**
+     * Drops the tiles covering the provided node and the edges to its neighbours in all zoom levels
+     */
+    private void invalidateNode(String nodeId) {
+        GraphicNode node = graph.getNode(nodeId);
+        if (node == null)
+            return;
+        double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        include(bounds, node);
+        for (Edge edge : node.getEachEdge())
+            include(bounds, edge.<GraphicNode>getOpposite(node));
+        for (ZoomLevel level : zoomLevels) {
+            int firstColumn = (int) Math.floor((bounds[0] * level.ratio - INVALIDATION_MARGIN) / TILE_SIZE);
+            int lastColumn = (int) Math.floor((bounds[2] * level.ratio + INVALIDATION_MARGIN) / TILE_SIZE);
+            int firstRow = (int) Math.floor((-bounds[3] * level.ratio - INVALIDATION_MARGIN) / TILE_SIZE);
+            int lastRow = (int) Math.floor((-bounds[1] * level.ratio + INVALIDATION_MARGIN) / TILE_SIZE);
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = firstColumn; column <= lastColumn; column++)
+                    tiles.remove(new TileKey(level, column, row));
+        }
+    }
+
+    /**
+     * @param bounds min x, min y, max x, max y in graph units
+     * @param node   whose position is added to the bounds
+     */
+    private static void include(double[] bounds, GraphicNode node) {
+        include(bounds, node.getX(), node.getY());
+    }
+
+    /**
+     * @param bounds min x, min y, max x, max y
+     */
+    private static void include(double[] bounds, double x, double y) {
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.max(bounds[2], x);
+        bounds[3] = Math.max(bounds[3], y);
+    }
+
+    /**
+     * Zoom of the camera and view size the tiles of a level were rendered for
+     */
+    private static final class ZoomLevel {
+        private final double percent;
+        private final int width;
+        private final int height;
+        // pixels per graph unit
+        private final double ratio;
+
+        ZoomLevel(double percent, int width, int height, double ratio) {
+            this.percent = percent;
+            this.width = width;
+            this.height = height;
+            this.ratio = ratio;
+        }
+
+        boolean matches(double percent, int width, int height) {
+            return this.percent == percent && this.width == width && this.height == height;
+        }
+    }
+
+    private static final class TileKey {
+        private final ZoomLevel level;
+        private final int column;
+        private final int row;
+
+        TileKey(ZoomLevel level, int column, int row) {
+            this.level = level;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof TileKey))
+                return false;
+            TileKey that = (TileKey) o;
+            return level == that.level && column == that.column && row == that.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(level) * 31 + column) * 31 + row;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package graphvisualizer;
+
+import java.awt.Color;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads the nodes of a tree for the {@link TreeVisualizer}, either through the {@link VisualizableNode} interface or through the
+ * functions passed to {@link TreeVisualizer#draw(Object, ChildrenFunction, Function, Function)}.
+ * Nodes are handled as Objects internally, {@link ChildrenPrefetcher.Placeholder placeholders} are answered by the accessor itself.
+ *
+ * @param <T> type of the tree nodes
+ */
+final class TreeAccessor<T> {
+    static final TreeAccessor<VisualizableNode> VISUALIZABLE_NODES = new TreeAccessor<>(
+            (node, action) -> {
+                VisualizableNode[] children = node.getChildren();
+                if (children != null)
+                    for (VisualizableNode child : children)
+                        action.accept(child);
+            },
+            VisualizableNode::getKeys,
+            VisualizableNode::getColor);
+
+    private final ChildrenFunction<T> childrenFn;
+    private final Function<? super T, Object[]> keysFn;
+    private final Function<? super T, Color> colorFn;
+
+    /**
+     * @param childrenFn streams the children of a node
+     * @param keysFn     returns the keys of a node
+     * @param colorFn    returns the color of a node or null for the default color. May be null itself.
+     */
+    TreeAccessor(ChildrenFunction<T> childrenFn, Function<? super T, Object[]> keysFn, Function<? super T, Color> colorFn) {
+        this.childrenFn = childrenFn;
+        this.keysFn = keysFn;
+        this.colorFn = colorFn;
+    }
+
+    /**
+     * @param node   whose children are requested
+     * @param action called once per non null child in drawing order
+     */
+    @SuppressWarnings("unchecked")
+    void forEachChild(Object node, Consumer<Object> action) {
+        if (node instanceof ChildrenPrefetcher.Placeholder)
+            return;
+        childrenFn.forEachChild((T) node, child -> {
+            if (child != null)
+                action.accept(child);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    Object[] getKeys(Object node) {
+        if (node instanceof ChildrenPrefetcher.Placeholder)
+            return ((ChildrenPrefetcher.Placeholder) node).getKeys();
+        Object[] keys = keysFn.apply((T) node);
+        return keys == null ? new Object[0] : keys;
+    }
+
+    @SuppressWarnings("unchecked")
+    Color getColor(Object node) {
+        if (node instanceof ChildrenPrefetcher.Placeholder)
+            return ((ChildrenPrefetcher.Placeholder) node).getColor();
+        return colorFn == null ? null : colorFn.apply((T) node);
+    }
+}
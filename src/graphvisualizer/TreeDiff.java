@@ -0,0 +1,339 @@
+package graphvisualizer;
+
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Matches the nodes of two trees and merges them into one tree showing the changes, used by {@link TreeVisualizer#drawDiff(VisualizableNode, VisualizableNode)}.
+ * <p>
+ * Nodes are matched by identity first. The remaining nodes are matched by their first key, preferring an unmatched child of the node
+ * the parent was matched with, then any unmatched node with that key. Both steps take linear time, unlike a tree edit distance.
+ * A matched node is {@link Change#MOVED moved} if its parent or its position among the children of its parent changed and
+ * {@link Change#RELABELED relabeled} if its keys changed. Deleted nodes are kept below the node their parent was matched with.
+ */
+final class TreeDiff {
+    private final Flattened before;
+    private final Flattened after;
+    private final int[] afterToBefore;
+    private final int[] beforeToAfter;
+
+    private TreeDiff(VisualizableNode before, VisualizableNode after) {
+        this.before = new Flattened(before);
+        this.after = new Flattened(after);
+        afterToBefore = new int[this.after.size];
+        beforeToAfter = new int[this.before.size];
+        Arrays.fill(afterToBefore, -1);
+        Arrays.fill(beforeToAfter, -1);
+        match();
+    }
+
+    /**
+     * @param before root of the old tree, may be null
+     * @param after  root of the new tree, may be null
+     * @return root of the merged tree or null if both trees are empty
+     */
+    static DiffNode diff(VisualizableNode before, VisualizableNode after) {
+        return new TreeDiff(before, after).merge();
+    }
+
+    private void match() {
+        IdentityHashMap<VisualizableNode, Integer> beforeIndices = new IdentityHashMap<>(2 * before.size);
+        for (int i = before.size - 1; i >= 0; i--)
+            beforeIndices.put(before.nodes[i], i);
+        for (int i = 0; i < after.size; i++) {
+            Integer match = beforeIndices.get(after.nodes[i]);
+            if (match != null && beforeToAfter[match] == -1)
+                link(match, i);
+        }
+        // unmatched before nodes per key as linked lists in preorder, so the first candidate is the one closest to the root
+        HashMap<String, Integer> firstByKey = new HashMap<>();
+        int[] nextWithKey = new int[before.size];
+        for (int i = before.size - 1; i >= 0; i--)
+            if (beforeToAfter[i] == -1) {
+                Integer next = firstByKey.put(before.getMatchKey(i), i);
+                nextWithKey[i] = next == null ? -1 : next;
+            }
+        // preorder, so the parent of a node is matched before the node itself
+        for (int i = 0; i < after.size; i++) {
+            if (afterToBefore[i] != -1)
+                continue;
+            int match = -1;
+            int parent = after.parents[i];
+            if (parent != -1 && afterToBefore[parent] != -1)
+                match = before.findUnmatchedChild(afterToBefore[parent], after.getMatchKey(i), beforeToAfter);
+            if (match == -1) {
+                String key = after.getMatchKey(i);
+                Integer candidate = firstByKey.get(key);
+                int first = candidate == null ? -1 : candidate;
+                // skip candidates matched through their parent in the meantime
+                while (first != -1 && beforeToAfter[first] != -1)
+                    first = nextWithKey[first];
+                if (first != -1) {
+                    match = first;
+                    firstByKey.put(key, nextWithKey[first]);
+                }
+            }
+            if (match != -1)
+                link(match, i);
+        }
+    }
+
+    private void link(int beforeIndex, int afterIndex) {
+        beforeToAfter[beforeIndex] = afterIndex;
+        afterToBefore[afterIndex] = beforeIndex;
+    }
+
+    private Change classify(int afterIndex) {
+        int match = afterToBefore[afterIndex];
+        if (match == -1)
+            return Change.INSERTED;
+        int parent = after.parents[afterIndex];
+        int matchedParent = parent == -1 ? -1 : afterToBefore[parent];
+        if (parent != -1 && matchedParent == -1 || matchedParent != before.parents[match] || after.slots[afterIndex] != before.slots[match])
+            return Change.MOVED;
+        // equal keys are drawn the same, the labels are only built if the keys differ
+        if (!Arrays.equals(after.getKeys(afterIndex), before.getKeys(match)) && !after.getLabel(afterIndex).equals(before.getLabel(match)))
+            return Change.RELABELED;
+        return null;
+    }
+
+    /**
+     * @return root of the new tree with the deleted nodes grafted in
+     */
+    private DiffNode merge() {
+        // merged nodes are the after nodes followed by the deleted before nodes, each with the merged index of its parent
+        DiffNode[] merged = new DiffNode[after.size + before.size];
+        int[] mergedParents = new int[merged.length];
+        int size = 0;
+        for (int i = 0; i < after.size; i++) {
+            merged[size] = new DiffNode(after.nodes[i], classify(i));
+            mergedParents[size++] = after.parents[i];
+        }
+        int[] deletedIndices = new int[before.size];
+        for (int i = 0; i < before.size; i++) {
+            if (beforeToAfter[i] != -1)
+                continue;
+            deletedIndices[i] = size;
+            merged[size] = new DiffNode(before.nodes[i], Change.DELETED);
+            int parent = before.parents[i];
+            if (parent == -1)
+                // a deleted root is kept below the new root
+                mergedParents[size++] = after.size > 0 ? 0 : -1;
+            else
+                mergedParents[size++] = beforeToAfter[parent] != -1 ? beforeToAfter[parent] : deletedIndices[parent];
+        }
+        int[] childAmounts = new int[size];
+        for (int i = 0; i < size; i++)
+            if (mergedParents[i] != -1)
+                childAmounts[mergedParents[i]]++;
+        for (int i = 0; i < size; i++)
+            merged[i].children = new DiffNode[childAmounts[i]];
+        Arrays.fill(childAmounts, 0);
+        for (int i = 0; i < size; i++)
+            if (mergedParents[i] != -1)
+                merged[mergedParents[i]].children[childAmounts[mergedParents[i]]++] = merged[i];
+        return size > 0 ? merged[0] : null;
+    }
+
+    /**
+     * Kinds of changes and the style classes they are drawn with
+     */
+    enum Change {
+        INSERTED("inserted", new Color(170, 230, 170)),
+        DELETED("deleted", new Color(230, 230, 230)),
+        MOVED("moved", new Color(160, 200, 255)),
+        RELABELED("relabeled", new Color(255, 225, 140));
+
+        private final String styleClass;
+        private final Color color;
+
+        Change(String styleClass, Color color) {
+            this.styleClass = styleClass;
+            this.color = color;
+        }
+
+        String getStyleClass() {
+            return styleClass;
+        }
+
+        Color getColor() {
+            return color;
+        }
+    }
+
+    /**
+     * Node of the merged tree
+     */
+    static final class DiffNode implements VisualizableNode {
+        private final VisualizableNode node;
+        private final Change change;
+        private DiffNode[] children;
+
+        DiffNode(VisualizableNode node, Change change) {
+            this.node = node;
+            this.change = change;
+        }
+
+        /**
+         * @return the change of the node or null if it did not change
+         */
+        Change getChange() {
+            return change;
+        }
+
+        @Override
+        public Object[] getKeys() {
+            return node.getKeys();
+        }
+
+        @Override
+        public VisualizableNode[] getChildren() {
+            return children;
+        }
+
+        /**
+         * @return the color of the node if it did not change, else null so the color of the change is used
+         */
+        @Override
+        public Color getColor() {
+            return change == null ? node.getColor() : null;
+        }
+    }
+
+    /**
+     * A tree in preorder with parent indices, read iteratively so deep trees do not overflow the stack.
+     * Labels and keys are only read for the nodes that need them, identical trees are compared without reading any keys.
+     */
+    private static final class Flattened {
+        private int size;
+        private VisualizableNode[] nodes = new VisualizableNode[16];
+        private int[] parents = new int[16];
+        // index in the children array of the parent, null children included
+        private int[] slots = new int[16];
+        private final String[] labels;
+        private final String[] matchKeys;
+        // children of nodes with many children are looked up by key instead of scanned
+        private static final int MAX_SCANNED_CHILDREN = 16;
+        private HashMap<String, ArrayDeque<Integer>>[] childrenByKey;
+        private int[] childStart;
+        private int[] childList;
+
+        Flattened(VisualizableNode root) {
+            VisualizableNode[] stack = new VisualizableNode[16];
+            int[] stackParents = new int[16];
+            int[] stackSlots = new int[16];
+            int stackSize = 0;
+            if (root != null) {
+                stack[0] = root;
+                stackParents[0] = -1;
+                stackSize = 1;
+            }
+            while (stackSize > 0) {
+                stackSize--;
+                VisualizableNode node = stack[stackSize];
+                if (size == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, 2 * size);
+                    parents = Arrays.copyOf(parents, 2 * size);
+                    slots = Arrays.copyOf(slots, 2 * size);
+                }
+                nodes[size] = node;
+                parents[size] = stackParents[stackSize];
+                slots[size] = stackSlots[stackSize];
+                VisualizableNode[] children = node.getChildren();
+                if (children != null)
+                    for (int i = children.length - 1; i >= 0; i--)
+                        if (children[i] != null) {
+                            if (stackSize == stack.length) {
+                                stack = Arrays.copyOf(stack, 2 * stackSize);
+                                stackParents = Arrays.copyOf(stackParents, 2 * stackSize);
+                                stackSlots = Arrays.copyOf(stackSlots, 2 * stackSize);
+                            }
+                            stack[stackSize] = children[i];
+                            stackParents[stackSize] = size;
+                            stackSlots[stackSize] = i;
+                            stackSize++;
+                        }
+                size++;
+            }
+            labels = new String[size];
+            matchKeys = new String[size];
+        }
+
+        /**
+         * @return the keys of the node as they are drawn
+         */
+        String getLabel(int index) {
+            if (labels[index] == null)
+                labels[index] = Arrays.stream(getKeys(index)).filter(Objects::nonNull).map(Object::toString).collect(Collectors.joining(" | "));
+            return labels[index];
+        }
+
+        /**
+         * @return the first key of the node, used to match nodes that are not identical
+         */
+        String getMatchKey(int index) {
+            if (matchKeys[index] == null) {
+                Object[] keys = getKeys(index);
+                matchKeys[index] = keys.length == 0 || keys[0] == null ? "" : keys[0].toString();
+            }
+            return matchKeys[index];
+        }
+
+        Object[] getKeys(int index) {
+            Object[] keys = nodes[index].getKeys();
+            return keys == null ? new Object[0] : keys;
+        }
+
+        /**
+         * @param parent    index of the parent
+         * @param matchKey  first key of the searched child
+         * @param toAfter   matches of the nodes, -1 for unmatched nodes
+         * @return index of an unmatched child of the parent with the provided first key or -1
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        int findUnmatchedChild(int parent, String matchKey, int[] toAfter) {
+            if (childStart == null)
+                indexChildren();
+            if (childStart[parent + 1] - childStart[parent] <= MAX_SCANNED_CHILDREN) {
+                for (int i = childStart[parent]; i < childStart[parent + 1]; i++)
+                    if (toAfter[childList[i]] == -1 && getMatchKey(childList[i]).equals(matchKey))
+                        return childList[i];
+                return -1;
+            }
+            if (childrenByKey == null)
+                childrenByKey = new HashMap[size];
+            if (childrenByKey[parent] == null) {
+                childrenByKey[parent] = new HashMap<>();
+                for (int i = childStart[parent]; i < childStart[parent + 1]; i++)
+                    childrenByKey[parent].computeIfAbsent(getMatchKey(childList[i]), key -> new ArrayDeque<>()).add(childList[i]);
+            }
+            ArrayDeque<Integer> candidates = childrenByKey[parent].get(matchKey);
+            while (candidates != null && !candidates.isEmpty()) {
+                int candidate = candidates.poll();
+                if (toAfter[candidate] == -1)
+                    return candidate;
+            }
+            return -1;
+        }
+
+        /**
+         * Stores the children of all nodes in one array, the children of node i are at childStart[i] until childStart[i + 1]
+         */
+        private void indexChildren() {
+            childStart = new int[size + 1];
+            for (int i = 1; i < size; i++)
+                childStart[parents[i] + 1]++;
+            for (int i = 0; i < size; i++)
+                childStart[i + 1] += childStart[i];
+            childList = new int[Math.max(0, size - 1)];
+            int[] next = Arrays.copyOf(childStart, size);
+            for (int i = 1; i < size; i++)
+                childList[next[parents[i]]++] = i;
+        }
+    }
+}
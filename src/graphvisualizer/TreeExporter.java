@@ -0,0 +1,369 @@
+package graphvisualizer;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Writes one file per tree of a stream of trees without showing them, e.g. every state of a randomized AVL test.
+ * <p>
+ * How to use:<br>
+ * <code>new {@link #TreeExporter(Path)}.{@link #export(Iterable)};</code><br>
+ * Each tree is captured on the calling thread before the next one is requested, so the stream may hand out the same root after changing the tree.
+ * Captured trees are laid out and written by a pool of workers while the next trees are captured. At most {@link #getMaxPending() maxPending}
+ * captured trees wait for their worker, capturing blocks until a worker catches up.
+ * <p>
+ * Trees are laid out like {@link TreeVisualizer#draw(VisualizableNode) drawn} trees with a {@link TreeVisualizer.TreeLayout tree layout},
+ * the {@link TreeVisualizer.TreeLayout#STANDARD_GRAPH standard graph layout} needs a view and is laid out as {@link TreeVisualizer.TreeLayout#TREE} instead.
+ */
+public class TreeExporter {
+    public static final Format DEFAULT_FORMAT = Format.LAYOUT;
+    public static final int DEFAULT_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    public static final int DEFAULT_MAX_PENDING = 64;
+
+    private final Path directory;
+    private Format format = DEFAULT_FORMAT;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxPending = DEFAULT_MAX_PENDING;
+    private TreeVisualizer.TreeLayout layout = TreeVisualizer.DEFAULT_LAYOUT;
+    private TreeVisualizer.YOffsetMode yOffsetMode = TreeVisualizer.DEFAULT_Y_OFFSET_MODE;
+    private int textSize = TreeVisualizer.DEFAULT_TEXT_SIZE;
+    private Color nodeColor = TreeVisualizer.DEFAULT_NODE_COLOR;
+
+    /**
+     * @param directory the files are written to, created if missing. Files are named state-00001, state-00002, ... in the order of the trees
+     *                  with the extension of the {@link Format}.
+     */
+    public TreeExporter(Path directory) {
+        this.directory = directory;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = Objects.requireNonNull(format);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism amount of workers laying out and writing trees
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism < 1");
+        this.parallelism = parallelism;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * @param maxPending maximum amount of captured trees that are not written yet, bounds the memory used by an export
+     */
+    public void setMaxPending(int maxPending) {
+        if (maxPending < 1)
+            throw new IllegalArgumentException("maxPending < 1");
+        this.maxPending = maxPending;
+    }
+
+    public TreeVisualizer.TreeLayout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(TreeVisualizer.TreeLayout layout) {
+        this.layout = Objects.requireNonNull(layout);
+    }
+
+    public TreeVisualizer.YOffsetMode getYOffsetMode() {
+        return yOffsetMode;
+    }
+
+    public void setYOffsetMode(TreeVisualizer.YOffsetMode yOffsetMode) {
+        this.yOffsetMode = Objects.requireNonNull(yOffsetMode);
+    }
+
+    public int getTextSize() {
+        return textSize;
+    }
+
+    /**
+     * @param textSize size of the key letters, the y offset between neighbouring children depends on it
+     */
+    public void setTextSize(int textSize) {
+        this.textSize = textSize;
+    }
+
+    public Color getNodeColor() {
+        return nodeColor;
+    }
+
+    /**
+     * @param nodeColor color of nodes without own color
+     */
+    public void setNodeColor(Color nodeColor) {
+        this.nodeColor = Objects.requireNonNull(nodeColor);
+    }
+
+    /**
+     * Exports every tree of the provided stream
+     *
+     * @param roots of the trees, null roots are exported as empty trees
+     * @return amount of written files
+     * @throws IOException if a file could not be written. Trees after the failed one are not exported anymore.
+     *                     Exceptions and errors thrown while laying out a tree are rethrown the same way.
+     */
+    public int export(Iterable<? extends VisualizableNode> roots) throws IOException {
+        return export(roots, TreeAccessor.VISUALIZABLE_NODES);
+    }
+
+    /**
+     * Exports every tree of the provided stream of existing object trees, see {@link TreeVisualizer#draw(Object, ChildrenFunction, Function, Function)}
+     *
+     * @param roots      of the trees, null roots are exported as empty trees
+     * @param childrenFn streams the children of a node
+     * @param keysFn     returns the keys of a node
+     * @param colorFn    returns the color of a node or null for the default color. May be null itself.
+     * @param <T>        type of the tree nodes
+     * @return amount of written files
+     * @throws IOException if a file could not be written. Trees after the failed one are not exported anymore.
+     */
+    public <T> int export(Iterable<? extends T> roots, ChildrenFunction<T> childrenFn, Function<? super T, Object[]> keysFn, Function<? super T, Color> colorFn) throws IOException {
+        return export(roots, new TreeAccessor<>(childrenFn, keysFn, colorFn));
+    }
+
+    private int export(Iterable<?> roots, TreeAccessor<?> accessor) throws IOException {
+        Files.createDirectories(directory);
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "TreeExporter-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // the offset cache is not synchronized, each worker keeps its own so the workers never wait for each other
+        ThreadLocal<ChildOffsetCache> offsetCaches = ThreadLocal.withInitial(ChildOffsetCache::new);
+        int maxPending = this.maxPending;
+        Semaphore pending = new Semaphore(maxPending);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger written = new AtomicInteger();
+        int sequence = 0;
+        try {
+            for (Object root : roots) {
+                pending.acquire();
+                if (failure.get() != null) {
+                    pending.release();
+                    break;
+                }
+                CapturedTree tree = new CapturedTree(root, accessor);
+                int state = ++sequence;
+                workers.execute(() -> {
+                    try {
+                        write(tree, state, offsetCaches.get());
+                        written.incrementAndGet();
+                    } catch (Throwable e) {
+                        // errors like a stack overflow are recorded too, a failed tree must not be skipped silently
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        pending.release();
+                    }
+                });
+            }
+            // wait for the workers to write the remaining trees
+            pending.acquire(maxPending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("export interrupted after " + written.get() + " trees");
+        } finally {
+            workers.shutdownNow();
+        }
+        Throwable e = failure.get();
+        if (e instanceof IOException)
+            throw (IOException) e;
+        if (e instanceof RuntimeException)
+            throw (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        return written.get();
+    }
+
+    private void write(CapturedTree tree, int state, ChildOffsetCache offsetCache) throws IOException {
+        float[][] positions = layout(tree, offsetCache);
+        Path file = directory.resolve(String.format("state-%05d.%s", state, format.extension));
+        if (format == Format.LAYOUT) {
+            LayoutSnapshot snapshot = new LayoutSnapshot(new String[]{"unmarked"}, new String[]{CssGenerator.rgbString(nodeColor)},
+                    positions[0], positions[1], tree.parents, tree.colors, new byte[tree.size], tree.labels);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                snapshot.write(out, state);
+            }
+        } else
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writeDot(out, tree, positions, state);
+            }
+    }
+
+    /**
+     * @return x and y positions of the tree nodes in preorder, the root is placed at 0, 0
+     */
+    private float[][] layout(CapturedTree tree, ChildOffsetCache offsetCache) {
+        float[][] positions = new float[2][tree.size];
+        if (tree.size == 0)
+            return positions;
+        // parents come before their children in preorder
+        int[] childAmounts = new int[tree.size];
+        int[] depths = new int[tree.size];
+        int k = 0;
+        int height = 1;
+        for (int i = 1; i < tree.size; i++) {
+            int parent = tree.parents[i];
+            k = Math.max(k, ++childAmounts[parent]);
+            depths[i] = depths[parent] + 1;
+            height = Math.max(height, depths[i] + 1);
+        }
+        boolean multipleKeys = Arrays.stream(tree.keyAmounts).anyMatch(keyAmount -> keyAmount > 1);
+        double yOffset = 0;
+        if (yOffsetMode == TreeVisualizer.YOffsetMode.ON || yOffsetMode == TreeVisualizer.YOffsetMode.AUTO && TreeVisualizer.autoYOffset(k, multipleKeys, height))
+            yOffset = 1.25 * (textSize + textSize / 3f);
+        LayoutParameters parameters = new LayoutParameters(k, height, layout == TreeVisualizer.TreeLayout.TREE_INVERTED, yOffset);
+        // each child is placed at its parent plus its offset
+        double[] x = new double[tree.size];
+        double[] y = new double[tree.size];
+        int[] nextChild = new int[tree.size];
+        for (int i = 1; i < tree.size; i++) {
+            int parent = tree.parents[i];
+            int child = nextChild[parent]++;
+            double[] offsets = offsetCache.offsets(childAmounts[parent], depths[parent], parameters);
+            x[i] = x[parent] + offsets[2 * child];
+            y[i] = y[parent] + offsets[2 * child + 1];
+            positions[0][i] = (float) x[i];
+            positions[1][i] = (float) y[i];
+        }
+        return positions;
+    }
+
+    private void writeDot(Writer dot, CapturedTree tree, float[][] positions, int state) throws IOException {
+        dot.write("digraph state" + state + " {\n");
+        dot.write("  node [shape=box, style=filled, fontname=monospace, fillcolor=\"" + hex(nodeColor.getRGB()) + "\"];\n");
+        for (int i = 0; i < tree.size; i++) {
+            dot.write("  n" + i + " [label=\"" + escape(tree.labels[i]) + "\", pos=\"" + positions[0][i] + "," + positions[1][i] + "\"");
+            if (tree.colors[i] != -1)
+                dot.write(", fillcolor=\"" + hex(tree.colors[i]) + "\"");
+            dot.write("];\n");
+        }
+        for (int i = 1; i < tree.size; i++)
+            dot.write("  n" + tree.parents[i] + " -> n" + i + ";\n");
+        dot.write("}\n");
+    }
+
+    /**
+     * @return the label with quotes and backslashes escaped for a DOT string
+     */
+    private static String escape(String label) {
+        if (label.indexOf('"') == -1 && label.indexOf('\\') == -1)
+            return label;
+        StringBuilder escaped = new StringBuilder(label.length() + 8);
+        for (char c : label.toCharArray()) {
+            if (c == '"' || c == '\\')
+                escaped.append('\\');
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private static String hex(int rgb) {
+        return String.format("#%06x", rgb & 0xFFFFFF);
+    }
+
+    /**
+     * Output formats, the file extension is used for the exported files
+     */
+    public enum Format {
+        /**
+         * binary layout format of the {@link TreeVisualizer#startServer(int) browser viewer}, one frame per file
+         */
+        LAYOUT("tvl"),
+        /**
+         * Graphviz DOT with the node positions as pos attributes, render them with {@code neato -n}
+         */
+        DOT("dot");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * A tree copied in preorder, independent of later changes of the original tree
+     */
+    private static final class CapturedTree {
+        private int size;
+        private int[] parents = new int[16];
+        private int[] keyAmounts = new int[16];
+        private int[] colors = new int[16];
+        private String[] labels = new String[16];
+
+        CapturedTree(Object root, TreeAccessor<?> accessor) {
+            ArrayList<Object> stack = new ArrayList<>();
+            int[] stackParents = new int[16];
+            ArrayList<Object> children = new ArrayList<>();
+            if (root != null) {
+                stack.add(root);
+                stackParents[0] = -1;
+            }
+            while (!stack.isEmpty()) {
+                Object node = stack.remove(stack.size() - 1);
+                if (size == parents.length) {
+                    parents = Arrays.copyOf(parents, 2 * size);
+                    keyAmounts = Arrays.copyOf(keyAmounts, 2 * size);
+                    colors = Arrays.copyOf(colors, 2 * size);
+                    labels = Arrays.copyOf(labels, 2 * size);
+                }
+                parents[size] = stackParents[stack.size()];
+                Object[] keys = accessor.getKeys(node);
+                keyAmounts[size] = keys.length;
+                Color color = accessor.getColor(node);
+                colors[size] = color == null ? -1 : color.getRGB() & 0xFFFFFF;
+                // joined like the labels of drawn nodes
+                StringJoiner label = new StringJoiner(" | ");
+                for (Object key : keys)
+                    if (key != null)
+                        label.add(String.valueOf(key));
+                labels[size] = label.toString();
+                accessor.forEachChild(node, children::add);
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    if (stack.size() == stackParents.length)
+                        stackParents = Arrays.copyOf(stackParents, 2 * stack.size());
+                    stackParents[stack.size()] = size;
+                    stack.add(children.get(i));
+                }
+                children.clear();
+                size++;
+            }
+            parents = Arrays.copyOf(parents, size);
+            keyAmounts = Arrays.copyOf(keyAmounts, size);
+            colors = Arrays.copyOf(colors, size);
+            labels = Arrays.copyOf(labels, size);
+        }
+    }
+}
@@ -1,10 +1,9 @@
 package graphvisualizer;
 
+import org.graphstream.graph.Edge;
 import org.graphstream.graph.Node;
-import org.graphstream.ui.geom.Point3;
 import org.graphstream.ui.graphicGraph.GraphicGraph;
 import org.graphstream.ui.swingViewer.ViewPanel;
-import org.graphstream.ui.view.Camera;
 import org.graphstream.ui.view.Viewer;
 import org.graphstream.ui.view.util.DefaultMouseManager;
 
@@ -13,12 +12,32 @@ import java.awt.*;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Used to visualize tree structures implementing {@link VisualizableNode} interface for their Nodes.
+ * Existing object trees can also be drawn directly through {@link #draw(Object, ChildrenFunction, Function, Function) accessor functions}.
  * <p>
  * How to use:<br>
  * <code>new {@link #TreeVisualizer()}.{@link #draw(VisualizableNode)};</code><br>
@@ -34,9 +53,16 @@ public class TreeVisualizer {
     public static final YOffsetMode DEFAULT_Y_OFFSET_MODE = YOffsetMode.AUTO;
     public static final Color DEFAULT_NODE_COLOR = Color.white;
     public static final Color DEFAULT_MARK_COLOR = Color.white;
+    public static final int DEFAULT_MAX_REFRESH_RATE = 10;
+    public static final int DEFAULT_PREFETCH_PARALLELISM = 0;
+    public static final long DEFAULT_PREFETCH_TIMEOUT = 5000;
+    public static final boolean DEFAULT_PROGRESSIVE_RENDERING = false;
+    public static final long DEFAULT_TILE_CACHE_MEMORY_LIMIT = 0;
 
-    private static final double X_SCALE = 50;
-    private static final double Y = 300;
+    // style class a node gets back when it is unmarked, "unmarked" if missing
+    private static final String BASE_CLASS_ATTRIBUTE = "ui.tv.class";
+    private static final int PROGRESSIVE_CHUNK_SIZE = 250;
+    private static final long PROGRESSIVE_CHUNK_PAUSE = 5;
 
     private int k; // max deg+ of nodes in the tree
     private TreeLayout layout;
@@ -46,13 +72,54 @@ public class TreeVisualizer {
 
     private GraphicGraph graph;
     private Viewer viewer;
-    private ViewPanel viewPanel;
+    private TiledView viewPanel;
+    private volatile JProgressBar progressBar;
     private CssGenerator generalStyle;
     private CssGenerator markedStyle;
+    private final ArrayList<CssGenerator> diffStyles = new ArrayList<>();
 
     private int keyAmount = 1;
+    // set once the stylesheet draws all nodes as boxes, progressive draws lay out the tree more than once
+    private boolean boxedNodes;
     private int nodeAmount;
     private boolean firstVisualization = true;
+    private TreeAccessor<?> accessor = TreeAccessor.VISUALIZABLE_NODES;
+
+    // observed tree state, see ObservableVisualizableNode
+    private Object drawnRoot;
+    private int drawnHeight;
+    private LayoutParameters layoutParameters;
+    private final ChildOffsetCache offsetCache = new ChildOffsetCache();
+    // graph node ids of the drawn tree nodes by identity, equal tree nodes or colliding hash codes must not share a graph node
+    private final IdentityHashMap<Object, String> nodeIds = new IdentityHashMap<>();
+    private final HashMap<String, DrawnNode> drawnNodes = new HashMap<>();
+    private int nextNodeId;
+    // ids of removed graph nodes, reused so refreshes do not leave the styles of removed nodes behind
+    private final ArrayDeque<String> freeNodeIds = new ArrayDeque<>();
+    private int maxRefreshRate = DEFAULT_MAX_REFRESH_RATE;
+    private long lastRefresh;
+    private volatile ScheduledExecutorService backgroundExecutor;
+    private final Set<Object> dirtySubtrees = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final SubtreeChangeListener changeListener = this::markDirty;
+
+    // concurrent children fetching, see ChildrenPrefetcher
+    private int prefetchParallelism = DEFAULT_PREFETCH_PARALLELISM;
+    private long prefetchTimeout = DEFAULT_PREFETCH_TIMEOUT;
+    private ChildrenPrefetcher prefetcher;
+    private IdentityHashMap<Object, Object[]> prefetchedChildren;
+
+    // progressive rendering, a new draw call cancels the loading of the previous tree
+    private boolean progressiveRendering = DEFAULT_PROGRESSIVE_RENDERING;
+    private int drawGeneration;
+
+    // offscreen tiles of the drawn tree, see TiledView
+    private long tileCacheMemoryLimit = DEFAULT_TILE_CACHE_MEMORY_LIMIT;
+    private long treeVersion;
+
+    // browser viewers, see LayoutServer
+    private LayoutServer server;
+    private final LayoutRecorder layoutRecorder = new LayoutRecorder();
 
     /**
      * Calls {@link TreeVisualizer#TreeVisualizer(TreeLayout, YOffsetMode, int, Color, Color, boolean, int) constructor} with the {@link Config default values}
@@ -71,6 +138,11 @@ public class TreeVisualizer {
      */
     public TreeVisualizer(Config config) {
         this(config.layout, config.yOffsetMode, config.textSize, config.color, config.mark, config.automaticNodeScalingMode, config.nodeSize);
+        setMaxRefreshRate(config.maxRefreshRate);
+        setPrefetchParallelism(config.prefetchParallelism);
+        setPrefetchTimeout(config.prefetchTimeout);
+        setProgressiveRendering(config.progressiveRendering);
+        setTileCacheMemoryLimit(config.tileCacheMemoryLimit);
     }
 
 
@@ -116,6 +188,14 @@ public class TreeVisualizer {
         markedStyle.set("fill-color", CssGenerator.rgbString(mark));
         markedStyle.set("stroke-width", "2");
         markedStyle.set("z-index", "1000");
+
+        for (TreeDiff.Change change : TreeDiff.Change.values()) {
+            CssGenerator diffStyle = new CssGenerator("node", ".", change.getStyleClass());
+            diffStyle.set("fill-color", CssGenerator.rgbString(change.getColor()));
+            if (change == TreeDiff.Change.DELETED)
+                diffStyle.set("stroke-mode", "dashes");
+            diffStyles.add(diffStyle);
+        }
     }
 
     /**
@@ -125,14 +205,24 @@ public class TreeVisualizer {
         viewer = new Viewer(graph, Viewer.ThreadingModel.GRAPH_IN_ANOTHER_THREAD);
         viewer.setCloseFramePolicy(Viewer.CloseFramePolicy.CLOSE_VIEWER);
         // SETUP MOUSE LISTENERS
-        viewPanel = viewer.addDefaultView(true);
+        viewPanel = new TiledView(viewer, Viewer.DEFAULT_VIEW_ID, Viewer.newGraphRenderer());
+        viewer.addView(viewPanel);
+        viewPanel.openInAFrame(true);
         // remove GraphStream default MouseListener
         viewPanel.removeMouseListener(viewPanel.getMouseListeners()[0]);
         // Assign our own Mouse Listener which is making some changes to the GraphStream default MouseListener
-        TreeMouseManager mouseManager = new TreeMouseManager();
+        TreeMouseManager mouseManager = new TreeMouseManager(this);
         mouseManager.init(graph, viewPanel);
         //add a mouse wheel listener to the ViewPanel for zooming the graph
         viewPanel.addMouseWheelListener(e -> TreeVisualizer.zoomGraphMouseWheelMoved(e, viewPanel));
+        // progress indicator for progressive rendering
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        Window window = SwingUtilities.getWindowAncestor(viewPanel);
+        if (window instanceof JFrame)
+            ((JFrame) window).add(progressBar, BorderLayout.SOUTH);
+        this.progressBar = progressBar;
     }
 
     public int getTextSize() {
@@ -195,14 +285,134 @@ public class TreeVisualizer {
         this.nodeSize = nodeSize;
     }
 
+    public int getMaxRefreshRate() {
+        return maxRefreshRate;
+    }
+
+    /**
+     * @param maxRefreshRate maximum amount of redraws per second caused by changes of an {@link ObservableVisualizableNode observed tree}.
+     */
+    public void setMaxRefreshRate(int maxRefreshRate) {
+        if (maxRefreshRate < 1)
+            throw new IllegalArgumentException("maxRefreshRate < 1");
+        this.maxRefreshRate = maxRefreshRate;
+    }
+
+    public int getPrefetchParallelism() {
+        return prefetchParallelism;
+    }
+
+    /**
+     * @param prefetchParallelism maximum amount of concurrent calls reading the children of a node while drawing. 0 turns prefetching off and fetches the children one by one on the drawing thread.
+     */
+    public void setPrefetchParallelism(int prefetchParallelism) {
+        if (prefetchParallelism < 0)
+            throw new IllegalArgumentException("prefetchParallelism < 0");
+        this.prefetchParallelism = prefetchParallelism;
+    }
+
+    public long getPrefetchTimeout() {
+        return prefetchTimeout;
+    }
+
+    /**
+     * @param prefetchTimeout time in milliseconds reading the children of a single node may take before it is drawn as a timeout placeholder.
+     */
+    public void setPrefetchTimeout(long prefetchTimeout) {
+        if (prefetchTimeout < 1)
+            throw new IllegalArgumentException("prefetchTimeout < 1");
+        this.prefetchTimeout = prefetchTimeout;
+    }
+
+    public boolean isProgressiveRendering() {
+        return progressiveRendering;
+    }
+
+    /**
+     * @param progressiveRendering if draw calls should only draw the root and return. The rest of the tree is then drawn breadth-first in background
+     *                             chunks while the view can already be used. The tree is still read by the background thread after the draw call
+     *                             returned, so it must not be changed until the progress bar is gone. Draw a copy of a tree that keeps changing,
+     *                             e.g. {@code insert(); draw(copy()); insert(); draw(copy());}. Nodes are placed with the part of the tree read so far and
+     *                             move once the tree turns out wider or deeper. A new draw call cancels the loading of the previous tree after its current chunk.
+     */
+    public void setProgressiveRendering(boolean progressiveRendering) {
+        this.progressiveRendering = progressiveRendering;
+    }
+
+    public long getTileCacheMemoryLimit() {
+        return tileCacheMemoryLimit;
+    }
+
+    /**
+     * @param tileCacheMemoryLimit maximum amount of bytes used to keep rendered parts of the tree as offscreen tiles, which makes panning large trees smooth.
+     *                             0 turns the tile cache off, so does a limit below the size of the tiles covering the view (4 bytes per pixel).
+     *                             Tiles are never used with the {@link TreeLayout#STANDARD_GRAPH standard graph layout}.
+     */
+    public void setTileCacheMemoryLimit(long tileCacheMemoryLimit) {
+        if (tileCacheMemoryLimit < 0)
+            throw new IllegalArgumentException("tileCacheMemoryLimit < 0");
+        this.tileCacheMemoryLimit = tileCacheMemoryLimit;
+        if (viewPanel != null)
+            viewPanel.setMemoryLimit(layout == TreeLayout.STANDARD_GRAPH ? 0 : tileCacheMemoryLimit);
+    }
+
+    /**
+     * Starts a local HTTP server that serves a browser viewer and streams the drawn tree to it in a compact binary layout format.
+     * Viewers receive the tree again after every draw and only the changed nodes after refreshes, at most {@link #getMaxRefreshRate() max refresh rate} times per second.
+     * A running server is stopped first.
+     *
+     * @param port to listen on, 0 picks a free port. Only connections from the local machine naming the loopback address as host are accepted.
+     * @return address of the browser viewer
+     * @throws IOException if the port can not be bound
+     */
+    public synchronized URI startServer(int port) throws IOException {
+        stopServer();
+        server = new LayoutServer(port, this::snapshot, 1000 / maxRefreshRate);
+        graph.addSink(layoutRecorder);
+        server.changed();
+        return server.getUri();
+    }
+
+    /**
+     * Stops the server started by {@link #startServer(int)} and disconnects its viewers. Does nothing if no server is running.
+     */
+    public synchronized void stopServer() {
+        if (server != null) {
+            server.stop();
+            server = null;
+            graph.removeSink(layoutRecorder);
+        }
+    }
+
+    /**
+     * @param full if all nodes are needed, otherwise only the nodes changed since the previous snapshot are captured
+     * @return the current state of the drawn tree for the browser viewers
+     */
+    private synchronized LayoutSnapshot snapshot(boolean full) {
+        LinkedHashMap<String, String> classColors = new LinkedHashMap<>();
+        classColors.put("unmarked", getNodeColor());
+        classColors.put("marked", getMarkColor());
+        diffStyles.forEach(diffStyle -> classColors.put(diffStyle.getId(), diffStyle.get("fill-color")));
+        // the standard graph layout only moves the nodes of the viewer graph
+        GraphicGraph positions = layout == TreeLayout.STANDARD_GRAPH && viewer != null ? viewer.getGraphicGraph() : graph;
+        // the standard graph layout moves nodes without recorded changes
+        return layoutRecorder.capture(graph, positions, classColors, full || layout == TreeLayout.STANDARD_GRAPH);
+    }
+
     /**
      * reset the graph and perform a default setup
      */
     private void reset() {
         graph.clear();
+        nodeIds.clear();
+        drawnNodes.clear();
+        nextNodeId = 0;
+        freeNodeIds.clear();
         keyAmount = 1;
+        boxedNodes = false;
         graphSetup();
-        viewer.getDefaultView().setVisible(false);
+        if (!progressiveRendering)
+            viewer.getDefaultView().setVisible(false);
 
     }
 
@@ -218,15 +428,91 @@ public class TreeVisualizer {
             viewer.disableAutoLayout();
         else
             viewer.enableAutoLayout();
-        graph.setAttribute("ui.stylesheet", generalStyle.toString() + markedStyle.toString());
+        // nodes moved by the auto layout would leave outdated tiles
+        viewPanel.setMemoryLimit(layout == TreeLayout.STANDARD_GRAPH ? 0 : tileCacheMemoryLimit);
+        graph.setAttribute("ui.stylesheet", generalStyle.toString() + diffStyles.stream().map(CssGenerator::toString).collect(Collectors.joining()) + markedStyle.toString());
     }
 
     /**
-     * draws a new tree growing from the provided root Node
+     * draws a new tree growing from the provided root Node.
+     * If the root is an {@link ObservableVisualizableNode} the drawing follows its changes until the next draw call,
+     * reading them through {@link ObservableVisualizableNode#readLocked(Supplier)}.
      *
      * @param root of a tree or subtree
      */
-    public void draw(VisualizableNode root) {
+    public synchronized void draw(VisualizableNode root) {
+        observe(root);
+        drawTree(root, TreeAccessor.VISUALIZABLE_NODES);
+    }
+
+    /**
+     * draws a new tree growing from the provided root of an existing object tree.
+     * The tree is walked directly through the provided functions, its nodes neither have to implement {@link VisualizableNode} nor are they wrapped.
+     *
+     * @param root       of a tree or subtree
+     * @param childrenFn streams the children of a node, see {@link VisualizableNode#getChildren()}
+     * @param keysFn     returns the keys of a node, see {@link VisualizableNode#getKeys()}
+     * @param colorFn    returns the color of a node or null for the default color, see {@link VisualizableNode#getColor()}. May be null itself.
+     * @param <T>        type of the tree nodes
+     */
+    public synchronized <T> void draw(T root, ChildrenFunction<T> childrenFn, Function<? super T, Object[]> keysFn, Function<? super T, Color> colorFn) {
+        observe(root);
+        drawTree(root, new TreeAccessor<>(childrenFn, keysFn, colorFn));
+    }
+
+    /**
+     * draws the after tree together with the nodes deleted since the before tree and colors what changed:
+     * inserted, deleted, moved (other parent or other position below the parent) and relabeled (other keys) nodes.
+     * Nodes present in both trees are matched by identity first and then by their first key, so the trees may also be copies.
+     * Marking a changed node and unmarking it again restores its change color.
+     *
+     * @param before root of the old tree, may be null
+     * @param after  root of the new tree, may be null
+     */
+    public synchronized void drawDiff(VisualizableNode before, VisualizableNode after) {
+        TreeDiff.DiffNode root = TreeDiff.diff(before, after);
+        observe(root);
+        drawTree(root, TreeAccessor.VISUALIZABLE_NODES);
+    }
+
+    /**
+     * Moves the change listener registration to the provided root if it is an {@link ObservableVisualizableNode}
+     *
+     * @param root of the tree that is drawn next
+     */
+    private void observe(Object root) {
+        if (drawnRoot instanceof ObservableVisualizableNode)
+            ((ObservableVisualizableNode) drawnRoot).removeSubtreeChangeListener(changeListener);
+        dirtySubtrees.clear();
+        drawnRoot = root;
+        if (root instanceof ObservableVisualizableNode) {
+            getBackgroundExecutor();
+            ((ObservableVisualizableNode) root).addSubtreeChangeListener(changeListener);
+        }
+    }
+
+    /**
+     * @return single daemon thread executing observed tree refreshes and progressive rendering one after another
+     */
+    private ScheduledExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null)
+            backgroundExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "TreeVisualizer-background");
+                thread.setDaemon(true);
+                return thread;
+            });
+        return backgroundExecutor;
+    }
+
+    /**
+     * draws the tree growing from the provided root Node without touching the change listener registration
+     *
+     * @param root     of a tree or subtree
+     * @param accessor used to read the tree nodes
+     */
+    private void drawTree(Object root, TreeAccessor<?> accessor) {
+        this.accessor = accessor;
+        int generation = ++drawGeneration;
         // clear graph
         reset();
         if (root == null) {
@@ -238,122 +524,467 @@ public class TreeVisualizer {
             Node emptyMessageNode = graph.addNode("0");
             emptyMessageNode.addAttribute("ui.label", "EMPTY");
             emptyMessageNode.addAttribute("ui.class", "marked");
+            treeChanged();
         } else {
-            int height = getHeightNodesAndCheckForMultipleKeys(root);
-            if (keyAmount > 1) {
-                // if any node has more then 1 value set shape of all nodes to "box"
-                CssGenerator generalCss = new CssGenerator("node");
-                generalCss.set("shape", "rounded-box");
-                graph.setAttribute("ui.stylesheet", graph.getAttribute("ui.stylesheet") + generalCss.toString());
+            // draw root
+            DrawnNode rootNode = addDrawnNode(root, null, 0, 0, 0);
+            if (progressiveRendering) {
+                // show the root right away, it is configured again once the tree is measured
+                configureNode(rootNode.graphNode, root);
+                treeChanged();
+                viewer.getDefaultView().setVisible(true);
+                getBackgroundExecutor().execute(() -> drawProgressively(root, generation));
+                return;
             }
-            // draw root, using it's hashcode as id
-            Node graphRoot = graph.addNode(String.valueOf(root.hashCode()));
-            // Stringify key so it can be displayed
-            String[] rootKeyStrings = getKeys(root);
-            if (automaticNodeScalingMode)
-                configureNode(graphRoot, rootKeyStrings, root.getColor());
-            else
-                configureNode(graphRoot, rootKeyStrings, root.getColor(), nodeSize);
-            if (layout != TreeLayout.STANDARD_GRAPH)
-                graphRoot.setAttribute("xyz", 0.0, 0.0, 0.0);
-            // traverse tree recursive drawing all nodes
-
-            if (nodeAmount > 300)
-                if (nodeAmount > 500)
-                    if (nodeAmount > 700)
-                        viewPanel.getCamera().setViewPercent(0.3);
-                    else
-                        viewPanel.getCamera().setViewPercent(0.35);
-                else
-                    viewPanel.getCamera().setViewPercent(0.45);
-            addNodesRecursive(root, 1, height);
+            ArrayDeque<DrawnNode> pending = new ArrayDeque<>();
+            pending.add(measure(rootNode));
+            // traverse tree breadth-first drawing all nodes
+            addNodes(pending, Integer.MAX_VALUE);
+            prefetchedChildren = null;
         }
         viewer.getDefaultView().setVisible(true);
 
     }
 
-    private String[] getKeys(VisualizableNode node) {
-        return Arrays.stream(node.getKeys()).filter(Objects::nonNull)
-                .map(Object::toString).toArray(String[]::new);
+    /**
+     * Measures the tree and prepares its layout and styles.
+     *
+     * @param root the already drawn root of the tree
+     * @return the root ready to get its children drawn by {@link #addNodes(ArrayDeque, int)}
+     */
+    private DrawnNode measure(DrawnNode root) {
+        prefetch(root.node);
+        Measurement measurement = new Measurement(accessor, prefetchedChildren).measure(root.node);
+        measured(measurement);
+        return layOut(root, measurement.height);
     }
 
     /**
-     * draws children of the provided parent node and edges between the parentNode and the children.
-     * Traverse the tree recursive drawing all nodes.
+     * Prepares the layout and styles of a measured tree.
      *
-     * @param parentNode   the current node whose children should be visualized
-     * @param currentDepth current depth in the complete tree
-     * @param maxDepth     maximum depth of the complete tree
-     */
-    private void addNodesRecursive(VisualizableNode parentNode, int currentDepth, int maxDepth) {
-        Node graphNode = graph.getNode(String.valueOf(parentNode.hashCode()));
-        Object[] parentXYZ = graphNode.getAttribute("xyz");
-        VisualizableNode[] children = filterNullChildren(parentNode.getChildren());
-        //draws all children and edges to them. Recursively traverse children subtrees
-        for (int i = 0; i < children.length; i++) {
-            VisualizableNode child = children[i];
-            // draw child, using it's hashcode as id
-            Node childGraphNode = graph.addNode(String.valueOf(child.hashCode()));
-            if (layout != TreeLayout.STANDARD_GRAPH) {
-                // calculate custom node position
-                double x = calculateNodeXPosition((double) parentXYZ[0], i, children.length, currentDepth, maxDepth);
-                double y = calculateNodeYPosition((double) parentXYZ[1], i, keyAmount > 1, currentDepth, maxDepth);
-                childGraphNode.setAttribute("xyz", x, y, 0);
-            }
-            drawEdge(graphNode, childGraphNode);
-            // Stringify key so it can be displayed
-            String[] childKeyStrings = getKeys(child);
-            if (automaticNodeScalingMode)
-                configureNode(childGraphNode, childKeyStrings, child.getColor());
+     * @param root   the already drawn root of the tree
+     * @param height amount of levels of the tree
+     * @return the root ready to get its children drawn by {@link #addNodes(ArrayDeque, int)}
+     */
+    private DrawnNode layOut(DrawnNode root, int height) {
+        drawnHeight = height;
+        layoutParameters = new LayoutParameters(k, height, layout == TreeLayout.TREE_INVERTED, getYOffset(height));
+        if (keyAmount > 1 && !boxedNodes) {
+            // if any node has more then 1 value set shape of all nodes to "box"
+            CssGenerator generalCss = new CssGenerator("node");
+            generalCss.set("shape", "rounded-box");
+            graph.setAttribute("ui.stylesheet", graph.getAttribute("ui.stylesheet") + generalCss.toString());
+            boxedNodes = true;
+        }
+        configureNode(root.graphNode, root.node);
+        if (nodeAmount > 300)
+            if (nodeAmount > 500)
+                if (nodeAmount > 700)
+                    viewPanel.getCamera().setViewPercent(0.3);
+                else
+                    viewPanel.getCamera().setViewPercent(0.35);
             else
-                configureNode(childGraphNode, childKeyStrings, child.getColor(), nodeSize);
+                viewPanel.getCamera().setViewPercent(0.45);
+        return root;
+    }
 
-            // traverse child subtree
-            addNodesRecursive(child, currentDepth + 1, maxDepth);
+    /**
+     * Background part of a progressive draw. Reads the tree and draws it breadth-first in chunks.
+     * Each chunk of nodes is fetched and measured first and drawn with the layout parameters of the part of the tree measured so far.
+     * The drawn nodes are placed again whenever their amount doubled and once the whole tree is measured.
+     * The locks are released between chunks, so the view stays usable and a new draw call can cancel the loading.
+     *
+     * @param root       of the tree
+     * @param generation of the draw call that started the loading
+     */
+    private void drawProgressively(Object root, int generation) {
+        TreeAccessor<?> accessor;
+        ChildrenPrefetcher prefetcher;
+        synchronized (this) {
+            if (generation != drawGeneration)
+                return;
+            accessor = this.accessor;
+            prefetcher = getPrefetcher();
         }
+        IdentityHashMap<Object, Object[]> prefetched = prefetcher == null ? null : new IdentityHashMap<>();
+        ArrayDeque<Object> toFetch = new ArrayDeque<>();
+        toFetch.add(root);
+        Measurement measurement = new Measurement(accessor, prefetched).start(root);
+        ArrayDeque<DrawnNode> pending = new ArrayDeque<>();
+        int[] drawn = {1};
+        // amount of drawn nodes when they were last placed, 0 until the root is laid out
+        int[] placed = {0};
+        boolean complete = false;
+        while (!complete || !pending.isEmpty()) {
+            boolean measuredAll = complete || readDrawnTree(root, () -> {
+                if (prefetcher != null)
+                    prefetcher.prefetch(toFetch, accessor, PROGRESSIVE_CHUNK_SIZE, prefetched);
+                return measurement.measure(PROGRESSIVE_CHUNK_SIZE);
+            });
+            boolean justCompleted = measuredAll && !complete;
+            complete = measuredAll;
+            int chunk = readDrawnTree(root, () -> {
+                synchronized (this) {
+                    if (generation != drawGeneration)
+                        return -1;
+                    prefetchedChildren = prefetched;
+                    if (justCompleted)
+                        measured(measurement);
+                    else {
+                        keyAmount = Math.max(keyAmount, measurement.keyAmount);
+                        k = Math.max(k, measurement.k);
+                    }
+                    DrawnNode rootNode = drawnNodes.get(nodeIds.get(root));
+                    if (placed[0] == 0) {
+                        pending.add(layOut(rootNode, measurement.height));
+                        placed[0] = 1;
+                    } else if (justCompleted || !measuredAll && drawn[0] >= 2 * placed[0]) {
+                        LayoutParameters provisional = layoutParameters;
+                        layOut(rootNode, measurement.height);
+                        if (!layoutParameters.equals(provisional)) {
+                            placeDrawnNodes();
+                            placed[0] = drawn[0];
+                        }
+                    }
+                    // only nodes whose parent is measured are drawn, their children are read already
+                    return addNodes(pending, measuredAll ? PROGRESSIVE_CHUNK_SIZE : Math.min(PROGRESSIVE_CHUNK_SIZE, measurement.getDiscovered() - drawn[0]));
+                }
+            });
+            if (chunk < 0)
+                return;
+            drawn[0] += chunk;
+            showProgress(drawn[0], measurement.getDiscovered());
+            try {
+                Thread.sleep(PROGRESSIVE_CHUNK_PAUSE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        synchronized (this) {
+            if (generation == drawGeneration)
+                prefetchedChildren = null;
+        }
+        showProgress(measurement.nodeAmount, measurement.nodeAmount);
+    }
+
+    /**
+     * @param drawn amount of drawn nodes
+     * @param total amount of nodes in the tree. The progress bar is hidden once all are drawn.
+     */
+    private void showProgress(int drawn, int total) {
+        JProgressBar progressBar = this.progressBar;
+        if (progressBar == null)
+            return;
+        SwingUtilities.invokeLater(() -> {
+            progressBar.setMaximum(total);
+            progressBar.setValue(Math.min(drawn, total));
+            progressBar.setVisible(drawn < total);
+            if (progressBar.getParent() != null)
+                progressBar.getParent().revalidate();
+        });
     }
 
     /**
-     * calculates the x position for a child at a specific index
+     * Configures the graph node of the provided tree node according to the node scaling mode
      *
-     * @param parentX          parent node x position
-     * @param childIndex       index of the child in parents children list
-     * @param AmountOfChildren total amount of children of the parent
-     * @param currentDepth     current depth in the complete tree
-     * @param maxDepth         total depth the complete tree will reach
-     * @return child node x position
-     */
-    private double calculateNodeXPosition(double parentX, int childIndex, int AmountOfChildren,
-                                          int currentDepth, int maxDepth) {
-        if (AmountOfChildren == 1)
-            return parentX;
-        double distanceDecay = Math.pow(k, currentDepth);
-        // calculation of "distance" was decided by trial and error in terms of how k and maxDepth affected it.
-        double distance = X_SCALE * k * k * maxDepth * maxDepth / distanceDecay;
-        double xStart = parentX - distance / 2;
-        double distanceBetweenChildren = distance / (AmountOfChildren - 1);
-        return xStart + distanceBetweenChildren * childIndex;
-    }
-
-    /**
-     * @param parentY      parent node Y position
-     * @param childIndex   index of the child in parents children list
-     * @param multipleKeys if the current tree contains nodes with multiple values
-     * @param currentDepth current depth in the complete tree
-     * @param maxDepth     total depth the complete tree will reach
-     * @return child node y position
-     */
-    private double calculateNodeYPosition(double parentY, int childIndex, boolean multipleKeys, int currentDepth, int maxDepth) {
-        double y = 0;
-        if (yOffsetMode == YOffsetMode.ON)
-            y += childIndex * 1.25 * (getTextSize() + getHeightPadding()) * ((currentDepth % 2) * 2 + -1);
-        else if (yOffsetMode == YOffsetMode.AUTO)
-            y += autoYOffset(k, multipleKeys, maxDepth) ? childIndex * 1.25 * (getTextSize() + getHeightPadding()) * ((currentDepth % 2) * 2 + -1) : 0;
-        if (layout == TreeLayout.TREE)
-            y += parentY - Y;
+     * @param graphNode to be configured
+     * @param node      tree node whose keys and color are shown
+     */
+    private void configureNode(Node graphNode, Object node) {
+        configureNode(graphNode, node, getKeys(accessor, node), accessor.getColor(node));
+    }
+
+    /**
+     * Configures the graph node of the provided tree node according to the node scaling mode, without reading the tree node
+     *
+     * @param graphNode  to be configured
+     * @param node       tree node, only its identity and diff change are used
+     * @param keyStrings shown keys of the tree node, see {@link #getKeys(TreeAccessor, Object)}
+     * @param color      color of the tree node, may be null
+     */
+    private void configureNode(Node graphNode, Object node, String[] keyStrings, Color color) {
+        if (automaticNodeScalingMode)
+            configureNode(graphNode, keyStrings, color);
         else
-            y += parentY + Y;
-        return y;
+            configureNode(graphNode, keyStrings, color, nodeSize);
+        // nodes of a diff are drawn with the style of their change, which is restored when they get unmarked
+        TreeDiff.Change change = node instanceof TreeDiff.DiffNode ? ((TreeDiff.DiffNode) node).getChange() : null;
+        if (change != null) {
+            graphNode.setAttribute("ui.class", change.getStyleClass());
+            graphNode.setAttribute(BASE_CLASS_ATTRIBUTE, change.getStyleClass());
+        } else
+            graphNode.removeAttribute(BASE_CLASS_ATTRIBUTE);
+    }
+
+    /**
+     * Stringifies the keys of a node so they can be displayed
+     */
+    private static String[] getKeys(TreeAccessor<?> accessor, Object node) {
+        return Arrays.stream(accessor.getKeys(node)).filter(Objects::nonNull)
+                .map(Object::toString).toArray(String[]::new);
+    }
+
+    /**
+     * Adds a graph node for the tree node. Graph node ids are counted up per drawn tree node, ids of removed graph nodes are reused.
+     * Until a node is removed, parents have smaller ids than their children.
+     *
+     * @param node       the tree node
+     * @param parent     drawn parent of the node, null for the root
+     * @param childIndex index of the node among the children of its parent
+     * @param x          position of the node, ignored with the {@link TreeLayout#STANDARD_GRAPH standard graph layout}
+     * @param y          position of the node, ignored with the {@link TreeLayout#STANDARD_GRAPH standard graph layout}
+     * @return the drawn node
+     */
+    private DrawnNode addDrawnNode(Object node, DrawnNode parent, int childIndex, double x, double y) {
+        String id = freeNodeIds.isEmpty() ? String.valueOf(nextNodeId++) : freeNodeIds.pop();
+        DrawnNode drawn = new DrawnNode(node, graph.addNode(id), parent, childIndex);
+        drawn.place(x, y, layout != TreeLayout.STANDARD_GRAPH);
+        nodeIds.put(node, id);
+        drawnNodes.put(id, drawn);
+        return drawn;
+    }
+
+    /**
+     * draws children of the pending nodes and edges between them, breadth-first.
+     * Drawn children are appended to the pending nodes so the whole tree is drawn if no limit is set.
+     * Children are placed at the position of their parent plus their offset, see {@link ChildOffsetCache}.
+     *
+     * @param pending  drawn nodes whose children are not drawn yet
+     * @param maxNodes amount of nodes after which no further pending node gets its children drawn
+     * @return amount of drawn nodes
+     */
+    private int addNodes(ArrayDeque<DrawnNode> pending, int maxNodes) {
+        int drawn = 0;
+        ArrayList<Object> children = new ArrayList<>();
+        while (!pending.isEmpty() && drawn < maxNodes) {
+            DrawnNode parent = pending.poll();
+            forEachChild(parent.node, children::add);
+            parent.childAmount = children.size();
+            // null if the tree is not drawn with a tree layout
+            double[] offsets = layout == TreeLayout.STANDARD_GRAPH ? null : offsetCache.offsets(children.size(), parent.depth, layoutParameters);
+            //draws all children and edges to them
+            for (int i = 0; i < children.size(); i++) {
+                Object child = children.get(i);
+                DrawnNode drawnChild = offsets == null ? addDrawnNode(child, parent, i, 0, 0)
+                        : addDrawnNode(child, parent, i, parent.x + offsets[2 * i], parent.y + offsets[2 * i + 1]);
+                drawEdge(parent.graphNode, drawnChild.graphNode);
+                configureNode(drawnChild.graphNode, child);
+                pending.add(drawnChild);
+                drawn++;
+            }
+            children.clear();
+        }
+        treeChanged();
+        return drawn;
+    }
+
+    /**
+     * Places all drawn nodes again with the current layout parameters, e.g. once more of a progressively drawn tree is measured.
+     * Progressive draws start from a cleared graph and remove no nodes, so parents have smaller ids than their children and are placed first.
+     */
+    private void placeDrawnNodes() {
+        if (layout == TreeLayout.STANDARD_GRAPH)
+            return;
+        for (int id = 0; id < nextNodeId; id++) {
+            DrawnNode drawn = drawnNodes.get(String.valueOf(id));
+            if (drawn != null && drawn.parent != null) {
+                DrawnNode parent = drawn.parent;
+                double[] offsets = offsetCache.offsets(parent.childAmount, parent.depth, layoutParameters);
+                drawn.place(parent.x + offsets[2 * drawn.childIndex], parent.y + offsets[2 * drawn.childIndex + 1], true);
+            }
+        }
+    }
+
+    /**
+     * Lets the view know the drawn tree changed so it does not show outdated tiles, and sends it to the browser viewers
+     */
+    private void treeChanged() {
+        graph.setAttribute(TiledView.VERSION_ATTRIBUTE, ++treeVersion);
+        if (server != null)
+            server.changed();
+    }
+
+    /**
+     * Marks the provided subtree dirty and schedules a refresh that respects the {@link #getMaxRefreshRate() max refresh rate}.
+     * Called by observed trees, possibly from hot loops, so it only enqueues.
+     *
+     * @param subtreeRoot root of the changed subtree
+     */
+    private void markDirty(VisualizableNode subtreeRoot) {
+        if (subtreeRoot == null)
+            return;
+        dirtySubtrees.add(subtreeRoot);
+        if (refreshScheduled.compareAndSet(false, true)) {
+            long delay = Math.max(0, lastRefresh + 1000 / maxRefreshRate - System.currentTimeMillis());
+            backgroundExecutor.schedule(this::refreshDirtySubtrees, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reads the drawn tree through {@link ObservableVisualizableNode#readLocked(Supplier)} if it is observed.
+     * Background reads take the lock of the tree before the lock of the visualizer, like applications drawing while holding the lock of their tree.
+     *
+     * @param root of the drawn tree
+     * @param read reads the tree
+     * @return result of the read
+     */
+    private static <R> R readDrawnTree(Object root, Supplier<R> read) {
+        return root instanceof ObservableVisualizableNode ? ((ObservableVisualizableNode) root).readLocked(read) : read.get();
+    }
+
+    /**
+     * Redraws all dirty subtrees. Only the dirty subtrees are read again from the tree, they are copied while the tree is locked
+     * and drawn after its lock is released, so the graph is never changed while the observed tree waits for its lock.
+     * Falls back to drawing the whole tree if a subtree no longer fits into the current layout or reading it fails.
+     */
+    private void refreshDirtySubtrees() {
+        // reset the flag first so changes reported while refreshing schedule another refresh
+        refreshScheduled.set(false);
+        Object root;
+        TreeAccessor<?> accessor;
+        ChildrenPrefetcher prefetcher;
+        ArrayList<Object> subtreeRoots;
+        synchronized (this) {
+            lastRefresh = System.currentTimeMillis();
+            root = drawnRoot;
+            if (root == null || dirtySubtrees.isEmpty())
+                return;
+            Object[] dirty = dirtySubtrees.toArray();
+            dirtySubtrees.removeAll(Arrays.asList(dirty));
+            accessor = this.accessor;
+            prefetcher = getPrefetcher();
+            boolean redraw = layout == TreeLayout.STANDARD_GRAPH || Arrays.stream(dirty).anyMatch(node -> node == root);
+            subtreeRoots = redraw ? null : getRefreshedSubtrees(dirty);
+        }
+        try {
+            if (subtreeRoots != null) {
+                CapturedSubtree[] subtrees = readDrawnTree(root, () -> subtreeRoots.stream()
+                        .map(subtreeRoot -> new CapturedSubtree(subtreeRoot, accessor, prefetcher == null ? null : prefetcher.prefetch(subtreeRoot, accessor)))
+                        .toArray(CapturedSubtree[]::new));
+                synchronized (this) {
+                    // a new draw call replaced the tree in the meantime
+                    if (root != drawnRoot)
+                        return;
+                    if (drawSubtrees(subtrees))
+                        return;
+                }
+            }
+            redraw(root);
+        } catch (RuntimeException | StackOverflowError e) {
+            // a subtree may already be removed from the graph, draw the whole tree again
+            try {
+                redraw(root);
+            } catch (RuntimeException | StackOverflowError redrawFailure) {
+                e.addSuppressed(redrawFailure);
+            }
+            // the executor would swallow the failure
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    /**
+     * Draws the whole tree again if it is still the drawn one
+     */
+    private void redraw(Object root) {
+        readDrawnTree(root, () -> {
+            synchronized (this) {
+                if (root == drawnRoot) {
+                    prefetchedChildren = null;
+                    drawTree(drawnRoot, accessor);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @param dirty changed tree nodes
+     * @return the drawn dirty nodes without a dirty ancestor, their subtrees cover all changes
+     */
+    private ArrayList<Object> getRefreshedSubtrees(Object[] dirty) {
+        Set<String> dirtyIds = new HashSet<>();
+        for (Object node : dirty)
+            if (nodeIds.containsKey(node))
+                dirtyIds.add(nodeIds.get(node));
+        ArrayList<Object> subtreeRoots = new ArrayList<>();
+        for (Object node : dirty) {
+            DrawnNode drawn = drawnNodes.get(nodeIds.get(node));
+            if (drawn != null && !hasDirtyAncestor(drawn, dirtyIds))
+                subtreeRoots.add(node);
+        }
+        return subtreeRoots;
+    }
+
+    private boolean hasDirtyAncestor(DrawnNode drawn, Set<String> dirtyIds) {
+        for (DrawnNode parent = drawn.parent; parent != null; parent = parent.parent)
+            if (dirtyIds.contains(parent.graphNode.getId()))
+                return true;
+        return false;
+    }
+
+    /**
+     * Draws the captured subtrees in place of the drawn descendants of their roots
+     *
+     * @param subtrees captured dirty subtrees
+     * @return false if a subtree exceeds the current max deg+, key amount or height or contains a node that is still drawn elsewhere.
+     * The whole tree has to be drawn again then.
+     */
+    private boolean drawSubtrees(CapturedSubtree[] subtrees) {
+        for (CapturedSubtree subtree : subtrees) {
+            DrawnNode root = drawnNodes.get(nodeIds.get(subtree.nodes[0]));
+            // removed by a draw call in the meantime
+            if (root == null)
+                continue;
+            removeDescendants(root.graphNode);
+            if (subtree.keyAmount > keyAmount || subtree.k > k || root.depth + subtree.height > drawnHeight)
+                return false;
+            for (int i = 1; i < subtree.size; i++)
+                if (nodeIds.containsKey(subtree.nodes[i]))
+                    return false;
+            DrawnNode[] drawn = new DrawnNode[subtree.size];
+            drawn[0] = root;
+            root.childAmount = subtree.childAmounts[0];
+            configureNode(root.graphNode, subtree.nodes[0], subtree.keys[0], subtree.colors[0]);
+            for (int i = 1; i < subtree.size; i++) {
+                DrawnNode parent = drawn[subtree.parents[i]];
+                int childIndex = subtree.childIndices[i];
+                double[] offsets = offsetCache.offsets(parent.childAmount, parent.depth, layoutParameters);
+                drawn[i] = addDrawnNode(subtree.nodes[i], parent, childIndex, parent.x + offsets[2 * childIndex], parent.y + offsets[2 * childIndex + 1]);
+                drawn[i].childAmount = subtree.childAmounts[i];
+                drawEdge(parent.graphNode, drawn[i].graphNode);
+                configureNode(drawn[i].graphNode, subtree.nodes[i], subtree.keys[i], subtree.colors[i]);
+            }
+        }
+        treeChanged();
+        return true;
+    }
+
+    private void removeDescendants(Node graphNode) {
+        LinkedList<Node> children = new LinkedList<>();
+        for (Edge edge : graphNode.getEachEdge())
+            if (edge.getSourceNode() == graphNode)
+                children.add(edge.getTargetNode());
+        for (Node child : children) {
+            removeDescendants(child);
+            DrawnNode removed = drawnNodes.remove(child.getId());
+            // a tree node drawn more than once keeps the id of its other graph node
+            nodeIds.remove(removed.node, child.getId());
+            // the graphic graph implements the removal by id only
+            graph.removeNode(child.getId());
+            freeNodeIds.push(child.getId());
+        }
+    }
+
+    /**
+     * @param maxDepth total depth the complete tree reaches
+     * @return alternating y offset between neighbouring children, 0 if no offset should be applied according to the {@link YOffsetMode}
+     */
+    private double getYOffset(int maxDepth) {
+        if (yOffsetMode == YOffsetMode.ON || yOffsetMode == YOffsetMode.AUTO && autoYOffset(k, keyAmount > 1, maxDepth))
+            return 1.25 * (getTextSize() + getHeightPadding());
+        return 0;
     }
 
     /**
@@ -368,26 +999,57 @@ public class TreeVisualizer {
      * @param maxDepth                 the maximum depth of the currently drawn tree
      * @return if a YOffset should be applied
      */
-    private boolean autoYOffset(int k, boolean treeContainsMultipleKeys, int maxDepth) {
+    static boolean autoYOffset(int k, boolean treeContainsMultipleKeys, int maxDepth) {
         return treeContainsMultipleKeys && maxDepth > 2 || k * maxDepth > 16;
     }
 
-    private int getHeightNodesAndCheckForMultipleKeys(VisualizableNode visualizableNode) {
-        nodeAmount++;
-        VisualizableNode[] children = filterNullChildren(visualizableNode.getChildren());
-        k = Math.max(k, children.length);
-        return Arrays.stream(children)
-                .mapToInt((node) -> {
-                            if (node.getKeys().length > keyAmount)
-                                keyAmount = node.getKeys().length;
-                            return getHeightNodesAndCheckForMultipleKeys(node);
-                        }
-                )
-                .max().orElse(0) + 1;
+    /**
+     * Takes over the node amount, key amount and max deg+ of a measurement
+     */
+    private void measured(Measurement measurement) {
+        nodeAmount += measurement.nodeAmount;
+        keyAmount = Math.max(keyAmount, measurement.keyAmount);
+        k = Math.max(k, measurement.k);
+    }
+
+    /**
+     * Streams the children of the provided node: the prefetched children if {@link #setPrefetchParallelism(int) prefetching} is enabled, else the ones read by the current accessor.
+     *
+     * @param node   whose children are requested
+     * @param action called once per non null child
+     */
+    private void forEachChild(Object node, Consumer<Object> action) {
+        Object[] children = prefetchedChildren == null ? null : prefetchedChildren.get(node);
+        if (children == null)
+            accessor.forEachChild(node, action);
+        else
+            for (Object child : children)
+                action.accept(child);
     }
 
-    private VisualizableNode[] filterNullChildren(VisualizableNode[] children) {
-        return Arrays.stream(children).filter(Objects::nonNull).toArray(VisualizableNode[]::new);
+    /**
+     * Fetches the children of the whole subtree concurrently if {@link #setPrefetchParallelism(int) prefetching} is enabled
+     *
+     * @param root of the subtree that is going to be drawn
+     */
+    private void prefetch(Object root) {
+        ChildrenPrefetcher prefetcher = getPrefetcher();
+        if (prefetcher != null)
+            prefetchedChildren = prefetcher.prefetch(root, accessor);
+    }
+
+    /**
+     * @return prefetcher matching the current settings or null if {@link #setPrefetchParallelism(int) prefetching} is disabled
+     */
+    private ChildrenPrefetcher getPrefetcher() {
+        if (prefetchParallelism == 0)
+            return null;
+        if (prefetcher == null || prefetcher.getParallelism() != prefetchParallelism || prefetcher.getTimeoutMillis() != prefetchTimeout) {
+            if (prefetcher != null)
+                prefetcher.shutdown();
+            prefetcher = new ChildrenPrefetcher(prefetchParallelism, prefetchTimeout);
+        }
+        return prefetcher;
     }
 
     /**
@@ -403,9 +1065,12 @@ public class TreeVisualizer {
         node.addAttribute("ui.label", unitedKey);
         node.addAttribute("ui.class", "unmarked");
         CssGenerator nodeCss = new CssGenerator("node", "#", node.getId());
-        if (color != null) {
-            nodeCss.set("fill-color", CssGenerator.rgbString(color));
-        }
+        // always set, a reused id keeps the style of its previous node otherwise
+        nodeCss.set("fill-color", color != null ? CssGenerator.rgbString(color) : getNodeColor());
+        if (color != null)
+            node.setAttribute(LayoutSnapshot.COLOR_ATTRIBUTE, color.getRGB() & 0xFFFFFF);
+        else
+            node.removeAttribute(LayoutSnapshot.COLOR_ATTRIBUTE);
         // Calculate node size
         float delimiterLength = delimiter.length();
         // for some reason stroke size is actually closer to 2 then 1 despite setting it to 1 in the generalStyle css.
@@ -414,7 +1079,8 @@ public class TreeVisualizer {
         float nodeWidth = (Arrays.stream(keys).mapToInt(String::length).sum() + delimiterLength * (keys.length - 1)) * getTextSize() * 0.6f;
         float nodeHeight = keyAmount > 1 ? getTextSize() + getHeightPadding() : nodeWidth + widthPaddingWithBorderSize;
         nodeCss.set("size", (nodeWidth + widthPaddingWithBorderSize) + "px, " + nodeHeight + "px");
-        graph.setAttribute("ui.stylesheet", graph.getAttribute("ui.stylesheet") + nodeCss.toString());
+        // a style of the node only, appending to the stylesheet would parse the whole growing stylesheet again for every node
+        node.setAttribute("ui.style", nodeCss.getDeclarations());
 
     }
 
@@ -431,12 +1097,15 @@ public class TreeVisualizer {
         node.addAttribute("ui.label", unitedKey);
         node.addAttribute("ui.class", "unmarked");
         CssGenerator nodeCss = new CssGenerator("node", "#", node.getId());
-        if (color != null) {
-            nodeCss.set("fill-color", CssGenerator.rgbString(color));
-        }
+        // always set, a reused id keeps the style of its previous node otherwise
+        nodeCss.set("fill-color", color != null ? CssGenerator.rgbString(color) : getNodeColor());
+        if (color != null)
+            node.setAttribute(LayoutSnapshot.COLOR_ATTRIBUTE, color.getRGB() & 0xFFFFFF);
+        else
+            node.removeAttribute(LayoutSnapshot.COLOR_ATTRIBUTE);
 
         nodeCss.set("size", nodeSize + "px, " + nodeSize + "px");
-        graph.setAttribute("ui.stylesheet", graph.getAttribute("ui.stylesheet") + nodeCss.toString());
+        node.setAttribute("ui.style", nodeCss.getDeclarations());
 
     }
 
@@ -476,6 +1145,210 @@ public class TreeVisualizer {
         }
     }
 
+    /**
+     * Measures a tree without touching the graph or the fields of the visualizer, so progressive draws can measure without holding its lock.
+     * Walks the tree breadth-first with its own queue, either at once or in bounded steps.
+     */
+    private static final class Measurement {
+        private final TreeAccessor<?> accessor;
+        private final IdentityHashMap<Object, Object[]> prefetchedChildren;
+        // nodes whose children are not measured yet
+        private final ArrayDeque<Object> queue = new ArrayDeque<>();
+        private final Consumer<Object> enqueue = queue::add;
+        // depth of the nodes measured next, nodes of that depth left in the queue and nodes of the next depth queued so far
+        private int depth;
+        private int levelRemaining;
+        private int nextLevel;
+        private int nodeAmount;
+        private int keyAmount = 1;
+        private int k;
+        // amount of levels reached so far
+        private int height;
+
+        /**
+         * @param accessor           used to read the tree nodes
+         * @param prefetchedChildren children per node fetched in advance, may be null
+         */
+        Measurement(TreeAccessor<?> accessor, IdentityHashMap<Object, Object[]> prefetchedChildren) {
+            this.accessor = accessor;
+            this.prefetchedChildren = prefetchedChildren;
+        }
+
+        /**
+         * Counts nodes, checks for multiple keys and determines the max deg+ and the height of the whole tree.
+         *
+         * @param root of the tree
+         * @return this measurement
+         */
+        Measurement measure(Object root) {
+            start(root);
+            measure(Integer.MAX_VALUE);
+            return this;
+        }
+
+        /**
+         * @param root of the tree that is measured by {@link #measure(int)}
+         * @return this measurement
+         */
+        Measurement start(Object root) {
+            queue.add(root);
+            levelRemaining = 1;
+            height = 1;
+            return this;
+        }
+
+        /**
+         * Measures the next nodes breadth-first, the counts cover the part of the tree measured so far.
+         *
+         * @param maxNodes amount of nodes whose children are read at most
+         * @return if the whole tree is measured
+         */
+        boolean measure(int maxNodes) {
+            for (int i = 0; i < maxNodes && !queue.isEmpty(); i++) {
+                if (levelRemaining == 0) {
+                    depth++;
+                    levelRemaining = nextLevel;
+                    nextLevel = 0;
+                }
+                Object node = queue.poll();
+                levelRemaining--;
+                nodeAmount++;
+                keyAmount = Math.max(keyAmount, accessor.getKeys(node).length);
+                int queued = queue.size();
+                Object[] children = prefetchedChildren == null ? null : prefetchedChildren.get(node);
+                if (children == null)
+                    accessor.forEachChild(node, enqueue);
+                else
+                    for (Object child : children)
+                        queue.add(child);
+                int childAmount = queue.size() - queued;
+                nextLevel += childAmount;
+                k = Math.max(k, childAmount);
+                if (childAmount > 0)
+                    height = Math.max(height, depth + 2);
+            }
+            return queue.isEmpty();
+        }
+
+        /**
+         * @return amount of measured nodes and their children
+         */
+        int getDiscovered() {
+            return nodeAmount + queue.size();
+        }
+    }
+
+    /**
+     * Copy of a dirty subtree read while the tree is locked, so it can be drawn after the lock is released.
+     * The nodes are stored in preorder, every node comes after its parent.
+     */
+    private static final class CapturedSubtree {
+        private int size;
+        private Object[] nodes = new Object[16];
+        private int[] parents = new int[16];
+        private int[] childIndices = new int[16];
+        private int[] childAmounts = new int[16];
+        private String[][] keys = new String[16][];
+        private Color[] colors = new Color[16];
+        private int keyAmount = 1;
+        private int k;
+        private int height;
+
+        /**
+         * @param root               of the subtree
+         * @param accessor           used to read the tree nodes
+         * @param prefetchedChildren children per node fetched in advance, may be null
+         */
+        CapturedSubtree(Object root, TreeAccessor<?> accessor, IdentityHashMap<Object, Object[]> prefetchedChildren) {
+            ArrayList<Object> stack = new ArrayList<>();
+            int[] stackParents = new int[16];
+            int[] depths = new int[16];
+            ArrayList<Object> children = new ArrayList<>();
+            stack.add(root);
+            stackParents[0] = -1;
+            while (!stack.isEmpty()) {
+                Object node = stack.remove(stack.size() - 1);
+                if (size == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, 2 * size);
+                    parents = Arrays.copyOf(parents, 2 * size);
+                    childIndices = Arrays.copyOf(childIndices, 2 * size);
+                    childAmounts = Arrays.copyOf(childAmounts, 2 * size);
+                    keys = Arrays.copyOf(keys, 2 * size);
+                    colors = Arrays.copyOf(colors, 2 * size);
+                    depths = Arrays.copyOf(depths, 2 * size);
+                }
+                int parent = stackParents[stack.size()];
+                nodes[size] = node;
+                parents[size] = parent;
+                if (parent >= 0) {
+                    // children are visited in order, after all children of their previous siblings
+                    childIndices[size] = childAmounts[parent]++;
+                    depths[size] = depths[parent] + 1;
+                }
+                height = Math.max(height, depths[size] + 1);
+                keyAmount = Math.max(keyAmount, accessor.getKeys(node).length);
+                keys[size] = getKeys(accessor, node);
+                colors[size] = accessor.getColor(node);
+                Object[] prefetched = prefetchedChildren == null ? null : prefetchedChildren.get(node);
+                if (prefetched == null)
+                    accessor.forEachChild(node, children::add);
+                else
+                    children.addAll(Arrays.asList(prefetched));
+                k = Math.max(k, children.size());
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    if (stack.size() == stackParents.length)
+                        stackParents = Arrays.copyOf(stackParents, 2 * stack.size());
+                    stackParents[stack.size()] = size;
+                    stack.add(children.get(i));
+                }
+                children.clear();
+                size++;
+            }
+        }
+    }
+
+    /**
+     * A drawn tree node with its graph node, depth and position.
+     * Its children are placed relative to its position.
+     */
+    private static final class DrawnNode {
+        private final Object node;
+        private final Node graphNode;
+        private final DrawnNode parent;
+        private final int childIndex;
+        private final int depth;
+        // amount of drawn children, set once they are drawn
+        private int childAmount;
+        private double x;
+        private double y;
+
+        /**
+         * @param node       the tree node
+         * @param graphNode  the graph node drawn for the tree node
+         * @param parent     drawn parent of the node, null for the root
+         * @param childIndex index of the node among the children of its parent
+         */
+        DrawnNode(Object node, Node graphNode, DrawnNode parent, int childIndex) {
+            this.node = node;
+            this.graphNode = graphNode;
+            this.parent = parent;
+            this.childIndex = childIndex;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        /**
+         * @param x    position of the node
+         * @param y    position of the node
+         * @param draw if the graph node is moved to the position, false if the tree is not drawn with a tree layout
+         */
+        void place(double x, double y, boolean draw) {
+            this.x = x;
+            this.y = y;
+            if (draw)
+                graphNode.setAttribute("xyz", x, y, 0.0);
+        }
+    }
+
     /**
      * Mouse Listener changing some features of the default GraphStream MouseListener
      * removes drag selection that is not working anyways.
@@ -485,31 +1358,28 @@ public class TreeVisualizer {
 
         private MouseEvent last;
         protected LinkedList<Node> markedElements;
+        // the graph is also changed by background threads holding this lock
+        private final Object graphLock;
 
 
-        TreeMouseManager() {
+        TreeMouseManager(Object graphLock) {
             super();
+            this.graphLock = graphLock;
             markedElements = new LinkedList<>();
         }
 
         @Override
         public void mouseDragged(MouseEvent e) {
             if (curElement != null) {
+                getTiledView().invalidateAll();
                 elementMoving(curElement, e);
             } else {
                 view.beginSelectionAt(0, 0);
                 view.endSelectionAt(0, 0);
-                Camera camera = view.getCamera();
                 if (last != null) {
-                    Point3 p1 = camera.getViewCenter();
-                    Point3 p2 = camera.transformGuToPx(p1.x, p1.y, 0);
                     int xdelta = e.getX() - last.getX();//determine direction
                     int ydelta = e.getY() - last.getY();//determine direction
-                    p2.x -= xdelta;
-                    p2.y -= ydelta;
-                    Point3 p3 = camera.transformPxToGu(p2.x, p2.y);
-                    camera.setViewCenter(p3.x, p3.y, 0);
-
+                    getTiledView().moveViewCenter(-xdelta, -ydelta);
                 }
                 last = e;
             }
@@ -517,14 +1387,22 @@ public class TreeVisualizer {
 
         @Override
         public void mousePressed(MouseEvent e) {
+            synchronized (graphLock) {
+                markElementAt(e);
+            }
+        }
+
+        private void markElementAt(MouseEvent e) {
             last = null;
             // deselect node
             if (curElement == null && (!(e.isShiftDown() || e.isControlDown() || SwingUtilities.isRightMouseButton(e)))) {
                 markedElements.forEach(node -> {
-                            node.setAttribute("ui.class", "unmarked");
+                            Object baseClass = node.getAttribute(BASE_CLASS_ATTRIBUTE);
+                            node.setAttribute("ui.class", baseClass == null ? "unmarked" : baseClass);
                             node.getEdgeSet().forEach(edge -> edge.setAttribute("ui.style", "size: 1px;"));
                         }
                 );
+                getTiledView().invalidateNodes(markedElements.stream().map(Node::getId).collect(Collectors.toList()));
                 markedElements.clear();
             }
             curElement = view.findNodeOrSpriteAt(e.getX(), e.getY());
@@ -532,18 +1410,25 @@ public class TreeVisualizer {
             if (curElement != null) {
                 super.mouseButtonPressOnElement(curElement, e);
                 if (!SwingUtilities.isRightMouseButton(e)) {
-                    if (curElement.getAttribute("ui.class").equals("unmarked")) {
+                    if (!"marked".equals(curElement.getAttribute("ui.class"))) {
                         Node node = graph.getNode(curElement.getId());
+                        if (node == null)
+                            return;
 
                         curElement.setAttribute("ui.class", "marked");
                         node.getEdgeSet().forEach(edge -> edge.setAttribute("ui.style", "size: 3px;"));
                         markedElements.add(node);
+                        getTiledView().invalidateNodes(Collections.singletonList(node.getId()));
                     }
                 }
             } else mouseButtonPress(e);
 
         }
 
+        private TiledView getTiledView() {
+            return (TiledView) view;
+        }
+
     }
 
 
@@ -557,6 +1442,11 @@ public class TreeVisualizer {
      * <p>mark = {@link #DEFAULT_MARK_COLOR }</p>
      * <p>automaticNodeScalingMode = {@value #DEFAULT_AUTOMATIC_NODE_SCALING_MODE }</p>
      * <p>nodeSize = {@value #DEFAULT_NODE_SIZE }</p>
+     * <p>maxRefreshRate = {@value #DEFAULT_MAX_REFRESH_RATE }</p>
+     * <p>prefetchParallelism = {@value #DEFAULT_PREFETCH_PARALLELISM }</p>
+     * <p>prefetchTimeout = {@value #DEFAULT_PREFETCH_TIMEOUT }</p>
+     * <p>progressiveRendering = {@value #DEFAULT_PROGRESSIVE_RENDERING }</p>
+     * <p>tileCacheMemoryLimit = {@value #DEFAULT_TILE_CACHE_MEMORY_LIMIT }</p>
      */
     public static final class Config {
         public TreeLayout layout = DEFAULT_LAYOUT;
@@ -566,6 +1456,11 @@ public class TreeVisualizer {
         public int nodeSize = DEFAULT_NODE_SIZE;
         public Color color = DEFAULT_NODE_COLOR;
         public Color mark = DEFAULT_MARK_COLOR;
+        public int maxRefreshRate = DEFAULT_MAX_REFRESH_RATE;
+        public int prefetchParallelism = DEFAULT_PREFETCH_PARALLELISM;
+        public long prefetchTimeout = DEFAULT_PREFETCH_TIMEOUT;
+        public boolean progressiveRendering = DEFAULT_PROGRESSIVE_RENDERING;
+        public long tileCacheMemoryLimit = DEFAULT_TILE_CACHE_MEMORY_LIMIT;
     }
 
     /**
@@ -0,0 +1,138 @@
+package graphvisualizer;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks how {@link TreeDiff} classifies inserted, deleted, moved and relabeled nodes of two separately built trees.
+ * Runs without a view, exits with an {@link AssertionError} on the first wrong classification.
+ */
+public class DiffCheck {
+
+    public static void main(String[] args) {
+        // unchanged trees
+        expect(TreeDiff.diff(tree("1", tree("2"), tree("3")), tree("1", tree("2"), tree("3"))),
+                "1", null, "2", null, "3", null);
+        // a new leaf
+        expect(TreeDiff.diff(tree("1", tree("2")), tree("1", tree("2"), tree("3"))),
+                "1", null, "2", null, "3", TreeDiff.Change.INSERTED);
+        // a removed leaf is kept below the parent of its match
+        TreeDiff.DiffNode deleted = TreeDiff.diff(tree("1", tree("2"), tree("3")), tree("1", tree("2")));
+        expect(deleted, "1", null, "2", null, "3", TreeDiff.Change.DELETED);
+        check(deleted.getChildren().length == 2 && deleted.getChildren()[1].getKeys()[0].equals("3"), "deleted node below its old parent");
+        // swapped children change their position among the children of their parent
+        expect(TreeDiff.diff(tree("1", tree("2", tree("4"), tree("5")), tree("3")), tree("1", tree("2", tree("5"), tree("4")), tree("3"))),
+                "1", null, "2", null, "3", null, "4", TreeDiff.Change.MOVED, "5", TreeDiff.Change.MOVED);
+        // a node below another parent
+        expect(TreeDiff.diff(tree("1", tree("2", tree("4")), tree("3")), tree("1", tree("2"), tree("3", tree("4")))),
+                "1", null, "2", null, "3", null, "4", TreeDiff.Change.MOVED);
+        // matched by its first key, the other keys changed
+        expect(TreeDiff.diff(tree(new Object[]{"1", "a"}, tree("2")), tree(new Object[]{"1", "b"}, tree("2"))),
+                "1", TreeDiff.Change.RELABELED, "2", null);
+        // a rotation: the old root becomes the child of its old child
+        expect(TreeDiff.diff(tree("2", tree("1"), tree("4", tree("3"), tree("5"))), tree("4", tree("2", tree("1"), tree("3")), tree("5"))),
+                "4", TreeDiff.Change.MOVED, "2", TreeDiff.Change.MOVED, "1", null, "3", TreeDiff.Change.MOVED, "5", null);
+        // identical node objects are matched even if their keys changed
+        Tree shared = tree("7");
+        Tree before = tree("1", shared);
+        Tree after = tree("1", shared);
+        shared.keys = new Object[]{"8"};
+        expect(TreeDiff.diff(before, after), "1", null, "8", null);
+        // empty trees
+        check(TreeDiff.diff(null, null) == null, "diff of empty trees");
+        expect(TreeDiff.diff(null, tree("1")), "1", TreeDiff.Change.INSERTED);
+        expect(TreeDiff.diff(tree("1"), null), "1", TreeDiff.Change.DELETED);
+        // deep chains do not overflow the stack
+        Tree chainBefore = chain(100000, 0);
+        Tree chainAfter = chain(100000, 1);
+        Map<Object, TreeDiff.Change> changes = changes(TreeDiff.diff(chainBefore, chainAfter));
+        check(changes.size() == 100001, "chain diff with " + changes.size() + " nodes");
+        check(changes.get("0") == TreeDiff.Change.DELETED && changes.get("100000") == TreeDiff.Change.INSERTED, "chain ends");
+        System.out.println("diff check passed");
+    }
+
+    /**
+     * @param diff           merged tree
+     * @param keysAndChanges pairs of first keys and the expected change, every node of the merged tree has to be listed
+     */
+    private static void expect(TreeDiff.DiffNode diff, Object... keysAndChanges) {
+        Map<Object, TreeDiff.Change> changes = changes(diff);
+        check(changes.size() == keysAndChanges.length / 2, "nodes " + changes.keySet() + " instead of " + Arrays.toString(keysAndChanges));
+        for (int i = 0; i < keysAndChanges.length; i += 2) {
+            Object key = keysAndChanges[i];
+            check(changes.containsKey(key), "missing node " + key);
+            check(changes.get(key) == keysAndChanges[i + 1], "node " + key + " is " + changes.get(key) + " instead of " + keysAndChanges[i + 1]);
+        }
+    }
+
+    /**
+     * @return change per first key of all nodes of the merged tree
+     */
+    private static Map<Object, TreeDiff.Change> changes(TreeDiff.DiffNode diff) {
+        Map<Object, TreeDiff.Change> changes = new HashMap<>();
+        List<TreeDiff.DiffNode> stack = new ArrayList<>();
+        if (diff != null)
+            stack.add(diff);
+        while (!stack.isEmpty()) {
+            TreeDiff.DiffNode node = stack.remove(stack.size() - 1);
+            changes.put(node.getKeys()[0], node.getChange());
+            for (VisualizableNode child : node.getChildren())
+                stack.add((TreeDiff.DiffNode) child);
+        }
+        return changes;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+
+    private static Tree tree(Object key, Tree... children) {
+        return tree(new Object[]{key}, children);
+    }
+
+    private static Tree tree(Object[] keys, Tree... children) {
+        Tree tree = new Tree();
+        tree.keys = keys;
+        tree.children = children;
+        return tree;
+    }
+
+    /**
+     * @return chain with the keys first until first + size - 1
+     */
+    private static Tree chain(int size, int first) {
+        Tree root = tree(String.valueOf(first));
+        Tree node = root;
+        for (int i = first + 1; i < first + size; i++) {
+            Tree child = tree(String.valueOf(i));
+            node.children = new Tree[]{child};
+            node = child;
+        }
+        return root;
+    }
+
+    private static final class Tree implements VisualizableNode {
+        private Object[] keys;
+        private Tree[] children;
+
+        @Override
+        public Object[] getKeys() {
+            return keys;
+        }
+
+        @Override
+        public VisualizableNode[] getChildren() {
+            return children;
+        }
+
+        @Override
+        public Color getColor() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package graphvisualizer;
+
+import java.awt.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Checks the binary layout format of {@link LayoutSnapshot} and the files written by the {@link TreeExporter}.
+ * Runs without a view, exits with an {@link AssertionError} on the first failed check.
+ */
+public class ExportCheck {
+    private static final int CHAIN_SIZE = 6000;
+    private static final int STATE_STEP = 1000;
+
+    public static void main(String[] args) throws IOException {
+        checkRoundTrip();
+        Path directory = Files.createTempDirectory("tree-export");
+        try {
+            checkDeepChain(directory.resolve("layout"), TreeExporter.Format.LAYOUT);
+            checkDeepChain(directory.resolve("dot"), TreeExporter.Format.DOT);
+            checkFailure(directory.resolve("failure"));
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        System.out.println("export check passed");
+    }
+
+    /**
+     * A snapshot written and read again keeps all of its values
+     */
+    private static void checkRoundTrip() throws IOException {
+        String[] classNames = {"unmarked", "marked"};
+        String[] classColors = {"rgb(255,255,255)", "rgb(255,0,0)"};
+        float[] x = {0, -150.5f, 150.5f};
+        float[] y = {0, -300, -300};
+        int[] parents = {-1, 0, 0};
+        int[] colors = {-1, 0x00FF00, -1};
+        byte[] classes = {0, 1, 0};
+        String[] labels = {"root", "\u00e4\u00f6\u00fc | 2", ""};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new LayoutSnapshot(classNames, classColors, x, y, parents, colors, classes, labels).write(new DataOutputStream(bytes), 7);
+        Frame frame = Frame.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        check(frame.sequence == 7, "sequence " + frame.sequence);
+        check(Arrays.equals(frame.classNames, classNames) && Arrays.equals(frame.classColors, classColors), "style classes");
+        check(Arrays.equals(frame.x, x) && Arrays.equals(frame.y, y), "positions");
+        check(Arrays.equals(frame.parents, parents), "parents");
+        check(Arrays.equals(frame.colors, colors), "colors");
+        check(Arrays.equals(frame.classes, classes), "classes");
+        check(Arrays.equals(frame.labels, labels), "labels");
+    }
+
+    /**
+     * Exports the states of a search tree filled with sorted keys, which degenerates to a chain deeper than the call stack allows to recurse
+     */
+    private static void checkDeepChain(Path directory, TreeExporter.Format format) throws IOException {
+        TreeExporter exporter = new TreeExporter(directory);
+        exporter.setFormat(format);
+        exporter.setParallelism(2);
+        SearchTree tree = new SearchTree();
+        Iterable<SearchTree.Node> states = () -> new Iterator<SearchTree.Node>() {
+            @Override
+            public boolean hasNext() {
+                return tree.size < CHAIN_SIZE;
+            }
+
+            @Override
+            public SearchTree.Node next() {
+                for (int i = 0; i < STATE_STEP; i++)
+                    tree.insert(tree.size);
+                return tree.root;
+            }
+        };
+        int written = exporter.export(states, (node, action) -> {
+            action.accept(node.left);
+            action.accept(node.right);
+        }, node -> new Object[]{node.key}, node -> null);
+        int expected = CHAIN_SIZE / STATE_STEP;
+        check(written == expected, format + ": " + written + " of " + expected + " states written");
+        Path last = directory.resolve(String.format("state-%05d.%s", expected, format == TreeExporter.Format.LAYOUT ? "tvl" : "dot"));
+        if (format == TreeExporter.Format.LAYOUT) {
+            Frame frame;
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(last))) {
+                frame = Frame.read(in);
+            }
+            check(frame.x.length == CHAIN_SIZE, "chain exported with " + frame.x.length + " nodes");
+            for (int i = 0; i < CHAIN_SIZE; i++) {
+                check(frame.parents[i] == i - 1, "parent of node " + i);
+                check(frame.labels[i].equals(String.valueOf(i)), "label of node " + i);
+                // single children are placed straight below their parent
+                check(frame.x[i] == 0 && frame.y[i] == -300f * i, "position of node " + i);
+            }
+        } else {
+            String dot = new String(Files.readAllBytes(last), StandardCharsets.UTF_8);
+            check(dot.contains("n" + (CHAIN_SIZE - 2) + " -> n" + (CHAIN_SIZE - 1) + ";"), "last edge of the chain");
+        }
+    }
+
+    /**
+     * An exception thrown while capturing a tree ends the export
+     */
+    private static void checkFailure(Path directory) throws IOException {
+        LayoutCheck.Node root = new LayoutCheck.Node(1);
+        List<LayoutCheck.Node> states = new ArrayList<>(Arrays.asList(root, root, null));
+        try {
+            new TreeExporter(directory).export(states, (node, action) -> node.children.forEach(action), node -> {
+                throw new IllegalStateException("broken node");
+            }, node -> Color.RED);
+            throw new AssertionError("export did not fail");
+        } catch (IllegalStateException e) {
+            check(e.getMessage().equals("broken node"), e.getMessage());
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+
+    /**
+     * A frame of the binary layout format, read as documented in {@link LayoutSnapshot}
+     */
+    private static final class Frame {
+        private int sequence;
+        private String[] classNames;
+        private String[] classColors;
+        private float[] x;
+        private float[] y;
+        private int[] parents;
+        private int[] colors;
+        private byte[] classes;
+        private String[] labels;
+
+        static Frame read(DataInputStream in) throws IOException {
+            check(in.readInt() == LayoutSnapshot.MAGIC, "magic");
+            Frame frame = new Frame();
+            frame.sequence = in.readInt();
+            int n = in.readInt();
+            int classAmount = in.readUnsignedShort();
+            frame.classNames = new String[classAmount];
+            frame.classColors = new String[classAmount];
+            for (int i = 0; i < classAmount; i++) {
+                frame.classNames[i] = readString(in);
+                frame.classColors[i] = readString(in);
+            }
+            frame.x = new float[n];
+            frame.y = new float[n];
+            frame.parents = new int[n];
+            frame.colors = new int[n];
+            frame.classes = new byte[n];
+            frame.labels = new String[n];
+            for (int i = 0; i < n; i++)
+                frame.x[i] = in.readFloat();
+            for (int i = 0; i < n; i++)
+                frame.y[i] = in.readFloat();
+            for (int i = 0; i < n; i++)
+                frame.parents[i] = in.readInt();
+            for (int i = 0; i < n; i++)
+                frame.colors[i] = in.readInt();
+            in.readFully(frame.classes);
+            for (int i = 0; i < n; i++)
+                frame.labels[i] = readString(in);
+            check(in.read() == -1, "bytes after the frame");
+            return frame;
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readUnsignedShort()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Unbalanced search tree, sorted inserts turn it into a chain
+     */
+    private static final class SearchTree {
+        private Node root;
+        private int size;
+
+        void insert(int key) {
+            size++;
+            if (root == null) {
+                root = new Node(key);
+                return;
+            }
+            Node node = root;
+            while (true)
+                if (key < node.key) {
+                    if (node.left == null) {
+                        node.left = new Node(key);
+                        return;
+                    }
+                    node = node.left;
+                } else {
+                    if (node.right == null) {
+                        node.right = new Node(key);
+                        return;
+                    }
+                    node = node.right;
+                }
+        }
+
+        private static final class Node {
+            private final int key;
+            private Node left;
+            private Node right;
+
+            Node(int key) {
+                this.key = key;
+            }
+        }
+    }
+}
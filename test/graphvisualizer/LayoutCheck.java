@@ -0,0 +1,180 @@
+package graphvisualizer;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that trees laid out with the {@link ChildOffsetCache} get the positions of the original recursive layout formulas.
+ * Runs without a view, exits with an {@link AssertionError} on the first wrong position.
+ */
+public class LayoutCheck {
+    private static final double X_SCALE = 50;
+    private static final double Y = 300;
+    private static final double Y_OFFSET = 25;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        ChildOffsetCache cache = new ChildOffsetCache();
+        for (int i = 0; i < 200; i++)
+            check(cache, randomTree(random, 1 + random.nextInt(4), 1 + random.nextInt(300)), random.nextBoolean(), random.nextBoolean() ? Y_OFFSET : 0);
+        check(cache, perfectTree(3, 7), false, Y_OFFSET);
+        check(cache, perfectTree(2, 12), true, 0);
+        // the same tree with other parameters, the cached offsets of the previous layout must not be reused
+        Node tree = randomTree(random, 3, 2000);
+        check(cache, tree, false, Y_OFFSET);
+        check(cache, tree, true, 0);
+        // deep chains, e.g. sorted inserts into an unbalanced search tree
+        for (int size : new int[]{5000, 10000, 20000}) {
+            Node chain = chain(size);
+            long start = System.nanoTime();
+            check(new ChildOffsetCache(), chain, false, 0);
+            System.out.printf("chain of %d nodes checked in %d ms%n", size, (System.nanoTime() - start) / 1000000);
+        }
+        System.out.println("layout check passed");
+    }
+
+    /**
+     * Lays out the tree with the cache and compares every position with the original formulas
+     */
+    private static void check(ChildOffsetCache cache, Node root, boolean inverted, double yOffset) {
+        List<Node> nodes = preorder(root);
+        int size = nodes.size();
+        int[] parents = new int[size];
+        int[] childIndices = new int[size];
+        int[] depths = new int[size];
+        parents[0] = -1;
+        int k = 1;
+        int height = 1;
+        for (int i = 0, next = 1; i < size; i++) {
+            k = Math.max(k, nodes.get(i).children.size());
+            height = Math.max(height, depths[i] + 1);
+            for (int j = 0; j < nodes.get(i).children.size(); j++, next++) {
+                parents[next] = i;
+                childIndices[next] = j;
+                depths[next] = depths[i] + 1;
+            }
+        }
+        LayoutParameters parameters = new LayoutParameters(k, height, inverted, yOffset);
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] expectedX = new double[size];
+        double[] expectedY = new double[size];
+        for (int i = 1; i < size; i++) {
+            int parent = parents[i];
+            int childIndex = childIndices[i];
+            int childAmount = nodes.get(parent).children.size();
+            double[] offsets = cache.offsets(childAmount, depths[parent], parameters);
+            x[i] = x[parent] + offsets[2 * childIndex];
+            y[i] = y[parent] + offsets[2 * childIndex + 1];
+            expectedX[i] = originalX(expectedX[parent], childIndex, childAmount, depths[i], k, height);
+            expectedY[i] = originalY(expectedY[parent], childIndex, depths[i], inverted, yOffset);
+            if (!close(x[i], expectedX[i]) || !close(y[i], expectedY[i]))
+                throw new AssertionError("node " + i + " at " + x[i] + ", " + y[i] + " instead of " + expectedX[i] + ", " + expectedY[i]);
+        }
+    }
+
+    /**
+     * x position formula of the recursive layout
+     */
+    private static double originalX(double parentX, int childIndex, int amountOfChildren, int currentDepth, int k, int maxDepth) {
+        if (amountOfChildren == 1)
+            return parentX;
+        double distanceDecay = Math.pow(k, currentDepth);
+        double distance = X_SCALE * k * k * maxDepth * maxDepth / distanceDecay;
+        double xStart = parentX - distance / 2;
+        double distanceBetweenChildren = distance / (amountOfChildren - 1);
+        return xStart + distanceBetweenChildren * childIndex;
+    }
+
+    /**
+     * y position formula of the recursive layout
+     */
+    private static double originalY(double parentY, int childIndex, int currentDepth, boolean inverted, double yOffset) {
+        double y = childIndex * yOffset * ((currentDepth % 2) * 2 + -1);
+        if (!inverted)
+            y += parentY - Y;
+        else
+            y += parentY + Y;
+        return y;
+    }
+
+    private static boolean close(double actual, double expected) {
+        return Math.abs(actual - expected) <= 1e-9 * Math.max(1, Math.abs(expected));
+    }
+
+    private static List<Node> preorder(Node root) {
+        List<Node> nodes = new ArrayList<>();
+        List<Node> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            nodes.add(node);
+            for (int i = node.children.size() - 1; i >= 0; i--)
+                stack.add(node.children.get(i));
+        }
+        return nodes;
+    }
+
+    private static Node randomTree(Random random, int k, int size) {
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(new Node(0));
+        while (nodes.size() < size) {
+            Node parent = nodes.get(random.nextInt(nodes.size()));
+            if (parent.children.size() < k) {
+                Node child = new Node(nodes.size());
+                parent.children.add(child);
+                nodes.add(child);
+            }
+        }
+        return nodes.get(0);
+    }
+
+    private static Node perfectTree(int k, int height) {
+        Node root = new Node(0);
+        if (height > 1)
+            for (int i = 0; i < k; i++)
+                root.children.add(perfectTree(k, height - 1));
+        return root;
+    }
+
+    private static Node chain(int size) {
+        Node root = new Node(0);
+        Node node = root;
+        for (int i = 1; i < size; i++) {
+            Node child = new Node(i);
+            node.children.add(child);
+            node = child;
+        }
+        return root;
+    }
+
+    /**
+     * Minimal tree node, also used by the other checks
+     */
+    static final class Node implements VisualizableNode {
+        final List<Node> children = new ArrayList<>();
+        Object key;
+        Color color;
+
+        Node(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public Object[] getKeys() {
+            return new Object[]{key};
+        }
+
+        @Override
+        public VisualizableNode[] getChildren() {
+            return children.toArray(new VisualizableNode[0]);
+        }
+
+        @Override
+        public Color getColor() {
+            return color;
+        }
+    }
+}
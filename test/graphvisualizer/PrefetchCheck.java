@@ -0,0 +1,200 @@
+package graphvisualizer;
+
+import graphvisualizer.LayoutCheck.Node;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Checks the timeouts of the {@link ChildrenPrefetcher}, the placeholders of failed calls and that calls are no longer started while too many are stuck.
+ * Runs without a view, exits with an {@link AssertionError} on the first failed check.
+ */
+public class PrefetchCheck {
+    private static final long TIMEOUT = 100;
+    // released at the end of checkStuck, calls of "stuck" nodes ignore interrupts until then
+    private static final CountDownLatch release = new CountDownLatch(1);
+    private static final TreeAccessor<Node> ACCESSOR = new TreeAccessor<>((node, action) -> {
+        try {
+            switch (String.valueOf(node.key)) {
+                case "hang":
+                    Thread.sleep(60000);
+                    break;
+                case "stuck":
+                    while (release.getCount() > 0)
+                        try {
+                            release.await();
+                        } catch (InterruptedException ignored) {
+                            // an abandoned call that does not react to interrupts
+                        }
+                    break;
+                case "fail":
+                    throw new IllegalStateException("page unreadable");
+                case "slow":
+                    Thread.sleep(1 + (node.hashCode() & 3));
+                    break;
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("interrupted", e);
+        }
+        node.children.forEach(action);
+    }, node -> new Object[]{node.key}, null);
+
+    public static void main(String[] args) {
+        checkComplete();
+        checkSteps();
+        checkFailedCalls();
+        checkInterrupts();
+        checkStuck();
+        System.out.println("prefetch check passed");
+    }
+
+    /**
+     * Every node of a tree is fetched with its children in order
+     */
+    private static void checkComplete() {
+        Node root = perfectTree(3, 6);
+        ChildrenPrefetcher prefetcher = new ChildrenPrefetcher(4, TIMEOUT);
+        try {
+            IdentityHashMap<Object, Object[]> fetched = prefetcher.prefetch(root, ACCESSOR);
+            check(fetched.size() == (729 - 1) / 2, fetched.size() + " nodes fetched");
+            checkFetched(root, fetched);
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    /**
+     * A tree fetched in bounded steps starts at most the given amount of calls per step and ends up fetched completely
+     */
+    private static void checkSteps() {
+        Node root = perfectTree(3, 6);
+        ChildrenPrefetcher prefetcher = new ChildrenPrefetcher(4, TIMEOUT);
+        try {
+            IdentityHashMap<Object, Object[]> fetched = new IdentityHashMap<>();
+            ArrayDeque<Object> toFetch = new ArrayDeque<>();
+            toFetch.add(root);
+            int steps = 0;
+            while (!toFetch.isEmpty()) {
+                int before = fetched.size();
+                prefetcher.prefetch(toFetch, ACCESSOR, 50, fetched);
+                check(fetched.size() - before <= 50, fetched.size() - before + " nodes fetched in one step");
+                steps++;
+            }
+            check(steps == 8, steps + " steps");
+            checkFetched(root, fetched);
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    /**
+     * Calls that time out or throw get a placeholder child, the other nodes are fetched without waiting for them longer than the timeout
+     */
+    private static void checkFailedCalls() {
+        Node root = new Node("root");
+        Node hang = new Node("hang");
+        Node fail = new Node("fail");
+        Node sibling = perfectTree(2, 4);
+        hang.children.add(new Node("below hang"));
+        root.children.add(hang);
+        root.children.add(fail);
+        root.children.add(sibling);
+        ChildrenPrefetcher prefetcher = new ChildrenPrefetcher(2, TIMEOUT);
+        try {
+            long start = System.nanoTime();
+            IdentityHashMap<Object, Object[]> fetched = prefetcher.prefetch(root, ACCESSOR);
+            long millis = (System.nanoTime() - start) / 1000000;
+            check(millis >= TIMEOUT && millis < 10 * TIMEOUT, "prefetch took " + millis + " ms");
+            check(placeholder(fetched.get(hang)).equals("timeout after " + TIMEOUT + "ms"), "placeholder of the hanging call");
+            check(placeholder(fetched.get(fail)).equals("error: IllegalStateException"), "placeholder of the failing call");
+            checkFetched(sibling, fetched);
+            check(fetched.size() == 3 + 15, fetched.size() + " nodes fetched");
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    /**
+     * Abandoning calls that time out interrupts only their own threads, never a call that ran on the same pool thread afterwards
+     */
+    private static void checkInterrupts() {
+        Node root = new Node("root");
+        for (int i = 0; i < 300; i++)
+            root.children.add(new Node("slow"));
+        ChildrenPrefetcher prefetcher = new ChildrenPrefetcher(2, 2);
+        try {
+            IdentityHashMap<Object, Object[]> fetched = prefetcher.prefetch(root, ACCESSOR);
+            for (Node child : root.children) {
+                Object[] children = fetched.get(child);
+                if (children.length > 0)
+                    check(placeholder(children).startsWith("timeout"), "call interrupted without timing out: " + placeholder(children));
+            }
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    /**
+     * While {@value ChildrenPrefetcher#MAX_ABANDONED_THREADS} abandoned calls are stuck no calls are started, the nodes are left to the caller
+     * instead of getting placeholders. Once the stuck calls return, whole trees are fetched again.
+     */
+    private static void checkStuck() {
+        Node root = new Node("root");
+        for (int i = 0; i < ChildrenPrefetcher.MAX_ABANDONED_THREADS; i++)
+            root.children.add(new Node("stuck"));
+        Node other = perfectTree(2, 3);
+        ChildrenPrefetcher prefetcher = new ChildrenPrefetcher(ChildrenPrefetcher.MAX_ABANDONED_THREADS, TIMEOUT);
+        try {
+            IdentityHashMap<Object, Object[]> fetched = prefetcher.prefetch(root, ACCESSOR);
+            check(fetched.size() == 1 + ChildrenPrefetcher.MAX_ABANDONED_THREADS, fetched.size() + " nodes fetched");
+            for (Node child : root.children)
+                check(placeholder(fetched.get(child)).startsWith("timeout"), "placeholder of a stuck call");
+            check(prefetcher.prefetch(other, ACCESSOR).isEmpty(), "no call started while the calls are stuck");
+            release.countDown();
+            // the stuck threads return shortly after being released
+            long deadline = System.currentTimeMillis() + 10 * TIMEOUT;
+            while (prefetcher.prefetch(other, ACCESSOR).size() < 7)
+                check(System.currentTimeMillis() < deadline, "calls started again after the stuck calls returned");
+            checkFetched(other, prefetcher.prefetch(other, ACCESSOR));
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    /**
+     * Checks that the whole subtree was fetched with the children of every node in order
+     */
+    private static void checkFetched(Node node, IdentityHashMap<Object, Object[]> fetched) {
+        Object[] children = fetched.get(node);
+        check(children != null && children.length == node.children.size(), "children of " + node.key);
+        for (int i = 0; i < children.length; i++) {
+            check(children[i] == node.children.get(i), "child " + i + " of " + node.key);
+            checkFetched(node.children.get(i), fetched);
+        }
+    }
+
+    /**
+     * @return message of the placeholder that is the only child
+     */
+    private static String placeholder(Object[] children) {
+        check(children != null && children.length == 1 && children[0] instanceof ChildrenPrefetcher.Placeholder, "placeholder child");
+        return String.valueOf(((ChildrenPrefetcher.Placeholder) children[0]).getKeys()[0]);
+    }
+
+    private static Node perfectTree(int degree, int depth) {
+        Node node = new Node(depth);
+        if (depth > 1) {
+            List<Node> children = node.children;
+            for (int i = 0; i < degree; i++)
+                children.add(perfectTree(degree, depth - 1));
+        }
+        return node;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,292 @@
+package graphvisualizer;
+
+import org.graphstream.graph.Node;
+import org.graphstream.ui.graphicGraph.GraphicGraph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that the delta frames recorded by the {@link LayoutRecorder} keep browser viewers in sync with the graph,
+ * and that the {@link LayoutServer} streams them only to requests naming the loopback address.
+ * Runs without a view, exits with an {@link AssertionError} on the first failed check.
+ */
+public class StreamCheck {
+    private static final Map<String, String> CLASS_COLORS = new LinkedHashMap<>();
+
+    static {
+        CLASS_COLORS.put("unmarked", "rgb(255,255,255)");
+        CLASS_COLORS.put("marked", "rgb(255,0,0)");
+    }
+
+    public static void main(String[] args) throws IOException {
+        // lets the check send other Host headers
+        System.setProperty("sun.net.http.allowRestrictedHeaders", "true");
+        checkDeltas();
+        checkServer();
+        checkFailedCapture();
+        System.out.println("stream check passed");
+    }
+
+    /**
+     * Full and delta frames applied one after another show the same tree as a full frame of the final graph
+     */
+    private static void checkDeltas() throws IOException {
+        GraphicGraph graph = new GraphicGraph("check");
+        LayoutRecorder recorder = new LayoutRecorder();
+        graph.addSink(recorder);
+        addChain(graph, null, "a", 50);
+        addChain(graph, "a0", "b", 50);
+        Viewer viewer = new Viewer();
+        LayoutSnapshot first = recorder.capture(graph, graph, CLASS_COLORS, false);
+        check(!first.isDelta(), "first capture is a full frame");
+        viewer.read(encode(first));
+        // refresh a subtree: remove the b chain below its root and add it again with another length, add a new chain
+        for (int i = 49; i > 0; i--)
+            graph.removeNode("b" + i);
+        addChain(graph, "b0", "b", 20);
+        graph.getNode("b0").setAttribute("ui.class", "marked");
+        addChain(graph, "a49", "c", 10);
+        LayoutSnapshot delta = recorder.capture(graph, graph, CLASS_COLORS, false);
+        check(delta.isDelta(), "refresh is captured as delta frame");
+        byte[] deltaBytes = encode(delta);
+        check(deltaBytes.length < encode(LayoutSnapshot.of(graph, graph, CLASS_COLORS)).length, "delta frame smaller than a full frame");
+        viewer.read(deltaBytes);
+        check(viewer.nodes().equals(nodes(graph)), "tree after the delta frame");
+        // removed indices are reused
+        for (int i = 9; i > 0; i--)
+            graph.removeNode("c" + i);
+        addChain(graph, "a10", "d", 5);
+        viewer.read(encode(recorder.capture(graph, graph, CLASS_COLORS, false)));
+        check(viewer.nodes().equals(nodes(graph)), "tree after reusing removed indices");
+        check(viewer.labels.length == 100, "indices grew to " + viewer.labels.length);
+        // clearing the graph makes the next frame a full one
+        graph.clear();
+        addChain(graph, null, "e", 3);
+        LayoutSnapshot cleared = recorder.capture(graph, graph, CLASS_COLORS, false);
+        check(!cleared.isDelta(), "capture after clearing is a full frame");
+        viewer.read(encode(cleared));
+        check(viewer.nodes().equals(nodes(graph)), "tree after clearing");
+    }
+
+    /**
+     * The server answers requests naming the loopback address only and streams a full frame followed by delta frames
+     */
+    private static void checkServer() throws IOException {
+        GraphicGraph graph = new GraphicGraph("check");
+        LayoutRecorder recorder = new LayoutRecorder();
+        graph.addSink(recorder);
+        addChain(graph, null, "a", 10);
+        LayoutServer server = new LayoutServer(0, full -> {
+            synchronized (graph) {
+                return recorder.capture(graph, graph, CLASS_COLORS, full);
+            }
+        }, 10);
+        try {
+            int port = server.getUri().getPort();
+            check(status(server.getUri().toURL(), "localhost:" + port) == 200, "viewer page for localhost");
+            check(status(server.getUri().toURL(), "127.0.0.1:" + port) == 200, "viewer page for 127.0.0.1");
+            check(status(server.getUri().toURL(), "attacker.example:" + port) == 403, "viewer page for another host");
+            check(status(new URL(server.getUri().toURL(), "layout"), "attacker.example:" + port) == 403, "layout stream for another host");
+            server.changed();
+            HttpURLConnection connection = (HttpURLConnection) new URL(server.getUri().toURL(), "layout").openConnection();
+            try (DataInputStream in = new DataInputStream(connection.getInputStream())) {
+                Viewer viewer = new Viewer();
+                viewer.read(next(in));
+                check(viewer.nodes().equals(nodes(graph)), "tree of the first streamed frame");
+                synchronized (graph) {
+                    addChain(graph, "a9", "b", 5);
+                }
+                server.changed();
+                byte[] frame = next(in);
+                check(new DataInputStream(new ByteArrayInputStream(frame)).readInt() == LayoutSnapshot.DELTA_MAGIC, "streamed refresh is a delta frame");
+                viewer.read(frame);
+                check(viewer.nodes().equals(nodes(graph)), "tree of the streamed delta frame");
+            } finally {
+                connection.disconnect();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * A capture that fails is reported and retried, so viewers get a frame without another change
+     */
+    private static void checkFailedCapture() throws IOException {
+        GraphicGraph graph = new GraphicGraph("check");
+        LayoutRecorder recorder = new LayoutRecorder();
+        graph.addSink(recorder);
+        addChain(graph, null, "a", 3);
+        AtomicInteger captures = new AtomicInteger();
+        AtomicInteger reported = new AtomicInteger();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> reported.incrementAndGet());
+        LayoutServer server = new LayoutServer(0, full -> {
+            if (captures.incrementAndGet() == 1)
+                throw new IllegalStateException("tree changed while reading");
+            return recorder.capture(graph, graph, CLASS_COLORS, full);
+        }, 10);
+        try {
+            server.changed();
+            HttpURLConnection connection = (HttpURLConnection) new URL(server.getUri().toURL(), "layout").openConnection();
+            connection.setReadTimeout(5000);
+            try (DataInputStream in = new DataInputStream(connection.getInputStream())) {
+                Viewer viewer = new Viewer();
+                viewer.read(next(in));
+                check(viewer.nodes().equals(nodes(graph)), "tree of the frame after the failed capture");
+            } finally {
+                connection.disconnect();
+            }
+            check(captures.get() == 2 && reported.get() == 1, captures.get() + " captures, " + reported.get() + " failures reported");
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(null);
+            server.stop();
+        }
+    }
+
+    private static int status(URL url, String host) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Host", host);
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static byte[] next(DataInputStream in) throws IOException {
+        byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+        return frame;
+    }
+
+    /**
+     * Adds a chain of nodes with the ids and labels prefix0 until prefix(size - 1), each below the previous one
+     */
+    private static void addChain(GraphicGraph graph, String parentId, String prefix, int size) {
+        for (int i = 0; i < size; i++) {
+            String id = prefix + i;
+            Node node = graph.addNode(id);
+            node.setAttribute("xyz", (double) i, (double) -i, 0.0);
+            node.setAttribute("ui.label", id);
+            if (parentId != null)
+                graph.addEdge(parentId + "to" + id, parentId, id, true);
+            parentId = id;
+        }
+    }
+
+    private static byte[] encode(LayoutSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.write(new DataOutputStream(bytes), 1);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return label, parent label, position and class of every node of the graph
+     */
+    private static TreeSet<String> nodes(GraphicGraph graph) throws IOException {
+        Viewer viewer = new Viewer();
+        viewer.read(encode(LayoutSnapshot.of(graph, graph, CLASS_COLORS)));
+        return viewer.nodes();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+
+    /**
+     * Applies frames the way the browser viewer does
+     */
+    private static final class Viewer {
+        private float[] x = new float[0];
+        private float[] y = new float[0];
+        private int[] parents = new int[0];
+        private byte[] classes = new byte[0];
+        private String[] labels = new String[0];
+
+        void read(byte[] frame) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+            int magic = in.readInt();
+            check(magic == LayoutSnapshot.MAGIC || magic == LayoutSnapshot.DELTA_MAGIC, "magic");
+            in.readInt();
+            int n = in.readInt();
+            int classAmount = in.readUnsignedShort();
+            for (int i = 0; i < 2 * classAmount; i++)
+                readString(in);
+            int[] indices;
+            if (magic == LayoutSnapshot.MAGIC) {
+                x = new float[0];
+                y = new float[0];
+                parents = new int[0];
+                classes = new byte[0];
+                labels = new String[0];
+                grow(n);
+                indices = new int[n];
+                for (int i = 0; i < n; i++)
+                    indices[i] = i;
+            } else {
+                grow(n);
+                int removed = in.readInt();
+                for (int i = 0; i < removed; i++)
+                    labels[in.readInt()] = null;
+                indices = new int[in.readInt()];
+                for (int i = 0; i < indices.length; i++)
+                    indices[i] = in.readInt();
+            }
+            for (int index : indices)
+                x[index] = in.readFloat();
+            for (int index : indices)
+                y[index] = in.readFloat();
+            for (int index : indices)
+                parents[index] = in.readInt();
+            for (int ignored : indices)
+                in.readInt();
+            for (int index : indices)
+                classes[index] = in.readByte();
+            for (int index : indices)
+                labels[index] = readString(in);
+            check(in.read() == -1, "bytes after the frame");
+        }
+
+        private void grow(int n) {
+            if (n <= labels.length)
+                return;
+            x = Arrays.copyOf(x, n);
+            y = Arrays.copyOf(y, n);
+            parents = Arrays.copyOf(parents, n);
+            classes = Arrays.copyOf(classes, n);
+            labels = Arrays.copyOf(labels, n);
+        }
+
+        /**
+         * @return label, parent label, position and class of every node that is not removed
+         */
+        TreeSet<String> nodes() {
+            List<String> nodes = new ArrayList<>();
+            for (int i = 0; i < labels.length; i++)
+                if (labels[i] != null)
+                    nodes.add(labels[i] + " below " + (parents[i] < 0 ? null : labels[parents[i]]) + " at " + x[i] + ", " + y[i] + " class " + classes[i]);
+            return new TreeSet<>(nodes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readUnsignedShort()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}